@@ -0,0 +1,285 @@
+/*
+ * Enjun
+ *
+ * @version     1.0 Beta 1
+ * @author      Rocking Stars
+ * @copyright   2018, Enjun
+ *
+ * Copyright 2018 RockingStars
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rockingstar.modules.Reversi.ai;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.IntSupplier;
+
+/**
+ * Computes AI moves on a dedicated thread, so a deep search never blocks the thread that delivers
+ * server messages or the JavaFX thread. Every move has a deadline: when it passes, the timeout
+ * action (which stops the search) is run, so the best move so far is returned. The move is handed
+ * back through a callback executor: Runnable::run plays it on the AI thread, Platform::runLater on
+ * the JavaFX thread. When computing a move fails, the failure is logged and a fallback move is
+ * played, so the AI never silently stops moving.
+ *
+ * For every move, the latency is recorded in three parts: the queue time (until the AI thread picks
+ * it up), the think time (computing the move) and the send time (from the computed move until the
+ * callback, which plays and sends it, returned).
+ * @author Rocking Stars
+ * @since 1.0 Beta 1
+ */
+public class AIExecutor {
+
+    /**
+     * The thread that computes the moves
+     */
+    private ExecutorService _executor;
+
+    /**
+     * Runs the timeout actions at the deadlines
+     */
+    private ScheduledExecutorService _watchdog;
+
+    /**
+     * Runs the callbacks
+     */
+    private Executor _callbackExecutor;
+
+    /**
+     * Stops the running computation when its deadline passed or it is cancelled
+     */
+    private Runnable _stopAction;
+
+    /**
+     * Receives the latency report of every move
+     */
+    private Consumer<String> _log;
+
+    /**
+     * The running computation, its deadline, and the flag that cancels its callback
+     */
+    private Future<?> _current;
+    private ScheduledFuture<?> _timeout;
+    private AtomicBoolean _cancelled = new AtomicBoolean();
+
+    /**
+     * Whether or not the running computation is still computing its move, rather than playing it
+     */
+    private AtomicBoolean _computing = new AtomicBoolean();
+
+    /**
+     * The number of moves, and the total and longest queue, think and send times, in ns
+     */
+    private long _moves;
+    private long[] _totalTimes = new long[3];
+    private long[] _maxTimes = new long[3];
+    private long[] _lastTimes = new long[3];
+
+    /**
+     * The number of moves that ran into their deadline, and the number of computations that failed
+     */
+    private long _timeouts;
+    private long _failures;
+
+    /**
+     * AIExecutor constructor
+     * @param callbackExecutor Runs the callbacks with the computed moves
+     * @param stopAction Stops a running computation, so it returns its best move so far
+     * @param log Receives the latency report of every move
+     */
+    public AIExecutor(Executor callbackExecutor, Runnable stopAction, Consumer<String> log) {
+        _callbackExecutor = callbackExecutor;
+        _stopAction = stopAction;
+        _log = log;
+        _executor = Executors.newSingleThreadExecutor(runnable -> createThread(runnable, "Reversi AI"));
+        _watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> createThread(runnable, "Reversi AI watchdog"));
+    }
+
+    /**
+     * Creates a daemon thread
+     * @param runnable The runnable of the thread
+     * @param name The name of the thread
+     * @return The thread
+     */
+    private static Thread createThread(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Computes a move on the AI thread. A computation that is still running is cancelled first.
+     * @param task Computes the move
+     * @param fallback The move that is played when the task fails
+     * @param deadline The time after which the computation is stopped, in ms from now
+     * @param onMove Plays the move, run by the callback executor unless the computation was cancelled
+     * @return The future of the computation, which can be used to wait for it
+     */
+    public synchronized Future<?> submit(IntSupplier task, int fallback, long deadline, IntConsumer onMove) {
+        cancel();
+
+        long submitted = System.nanoTime();
+        AtomicBoolean cancelled = new AtomicBoolean();
+        AtomicBoolean computing = new AtomicBoolean(true);
+
+        _cancelled = cancelled;
+        _computing = computing;
+        _current = _executor.submit(() -> {
+            long started = System.nanoTime();
+            int move = compute(task, fallback);
+            long computed = System.nanoTime();
+
+            computing.set(false);
+
+            if (cancelled.get())
+                return;
+
+            _callbackExecutor.execute(() -> {
+                if (cancelled.get())
+                    return;
+
+                // Nobody waits for the future, so a failure would go unnoticed
+                try {
+                    onMove.accept(move);
+                }
+                catch (RuntimeException e) {
+                    _log.accept("AI move " + move + " could not be played: " + e);
+                    e.printStackTrace();
+                    return;
+                }
+
+                record(started - submitted, computed - started, System.nanoTime() - computed);
+                _log.accept(getLastLatency());
+            });
+        });
+
+        _timeout = _watchdog.schedule(() -> {
+            if (computing.get()) {
+                synchronized (this) {
+                    _timeouts++;
+                }
+
+                _stopAction.run();
+            }
+        }, deadline, TimeUnit.MILLISECONDS);
+
+        return _current;
+    }
+
+    /**
+     * Cancels the running computation: it is stopped and its move is never played
+     */
+    public synchronized void cancel() {
+        if (_current == null)
+            return;
+
+        _cancelled.set(true);
+        _timeout.cancel(false);
+
+        // Once the move is computed the stop action would only hit whatever searches next, like a ponder search
+        if (_computing.get())
+            _stopAction.run();
+
+        _current = null;
+    }
+
+    /**
+     * Runs a task, falling back to a given move when it fails, so the game never stalls on a missing move
+     * @param task Computes the move
+     * @param fallback The move that is played when the task fails
+     * @return The move
+     */
+    private int compute(IntSupplier task, int fallback) {
+        try {
+            return task.getAsInt();
+        }
+        catch (RuntimeException e) {
+            synchronized (this) {
+                _failures++;
+            }
+
+            _log.accept("AI failed, playing " + fallback + " instead: " + e);
+            e.printStackTrace();
+
+            return fallback;
+        }
+    }
+
+    /**
+     * Cancels the running computation and stops the threads. The executor can't be used afterwards.
+     */
+    public void shutdown() {
+        cancel();
+        _executor.shutdownNow();
+        _watchdog.shutdownNow();
+    }
+
+    /**
+     * Records the latency of a move
+     * @param queueTime The queue time in ns
+     * @param thinkTime The think time in ns
+     * @param sendTime The send time in ns
+     */
+    private synchronized void record(long queueTime, long thinkTime, long sendTime) {
+        _lastTimes[0] = queueTime;
+        _lastTimes[1] = thinkTime;
+        _lastTimes[2] = sendTime;
+        _moves++;
+
+        for (int i = 0; i < 3; i++) {
+            _totalTimes[i] += _lastTimes[i];
+            _maxTimes[i] = Math.max(_maxTimes[i], _lastTimes[i]);
+        }
+    }
+
+    /**
+     * Returns the latency of the last move
+     * @return The queue, think and send time in ms
+     */
+    public synchronized String getLastLatency() {
+        return String.format("AI move latency: queue %.1f ms, think %.1f ms, send %.1f ms",
+                _lastTimes[0] / 1e6, _lastTimes[1] / 1e6, _lastTimes[2] / 1e6);
+    }
+
+    /**
+     * Returns the number of moves that were played
+     * @return The number of moves
+     */
+    public synchronized long getMoves() {
+        return _moves;
+    }
+
+    /**
+     * Returns the average and longest latencies of all moves
+     * @return The statistics
+     */
+    @Override
+    public synchronized String toString() {
+        if (_moves == 0)
+            return "No AI moves";
+
+        return String.format("%d AI moves, %d deadlines hit, %d failures; queue avg %.1f ms (max %.1f), think avg %.1f ms (max %.1f), send avg %.1f ms (max %.1f)",
+                _moves, _timeouts, _failures, _totalTimes[0] / 1e6 / _moves, _maxTimes[0] / 1e6, _totalTimes[1] / 1e6 / _moves,
+                _maxTimes[1] / 1e6, _totalTimes[2] / 1e6 / _moves, _maxTimes[2] / 1e6);
+    }
+}
@@ -0,0 +1,569 @@
+/*
+ * Enjun
+ *
+ * @version     1.0 Beta 1
+ * @author      Rocking Stars
+ * @copyright   2018, Enjun
+ *
+ * Copyright 2018 RockingStars
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rockingstar.modules.Reversi.ai;
+
+import com.rockingstar.modules.Reversi.models.BitBoard;
+
+/**
+ * Solves the end of a game exactly. The result is the final disc differential with perfect play,
+ * where empty cells at the end of the game go to the winner.
+ *
+ * Moves are ordered fastest-first (the move that leaves the opponent the fewest replies goes first)
+ * while many cells are empty, and by parity (cells in regions with an odd number of empty cells
+ * first) near the end. The last four empty cells are handled by dedicated routines that pass the
+ * empty cells as arguments, so the solver doesn't allocate anything while searching.
+ * @author Rocking Stars
+ * @since 1.0 Beta 1
+ */
+public class EndgameSolver {
+
+    /**
+     * The default number of empty cells at which the solver takes over
+     */
+    public static final int DEFAULT_THRESHOLD = 14;
+
+    /**
+     * Returned by solve when the solver ran out of time
+     */
+    public static final int UNSOLVED = -1;
+
+    /**
+     * Below this many empty cells, moves are ordered by parity instead of fastest-first
+     */
+    private static final int FASTEST_FIRST_EMPTIES = 7;
+
+    /**
+     * A score that is lower than any real score
+     */
+    private static final int INFINITY = 65;
+
+    /**
+     * The time is checked once every this many nodes
+     */
+    private static final int TIME_CHECK_INTERVAL = 4096;
+
+    /**
+     * The quadrant (0 to 3) of every position
+     */
+    private static final int[] QUADRANTS = new int[64];
+
+    /**
+     * The cells of every quadrant
+     */
+    private static final long[] QUADRANT_MASKS = {
+            0x000000000f0f0f0fL, 0x00000000f0f0f0f0L, 0x0f0f0f0f00000000L, 0xf0f0f0f000000000L
+    };
+
+    static {
+        for (int position = 0; position < 64; position++)
+            QUADRANTS[position] = (position % 8 >= 4 ? 1 : 0) + (position / 8 >= 4 ? 2 : 0);
+    }
+
+    /**
+     * The number of empty cells at which the solver takes over
+     */
+    private int _threshold;
+
+    /**
+     * Move lists for fastest-first ordering, one per number of empty cells. A position can't have more
+     * moves than empty cells, so rows of 64 hold every list at any threshold.
+     */
+    private final int[][] _moves = new int[64][64];
+    private final int[][] _sortKeys = new int[64][64];
+
+    /**
+     * Time control
+     */
+    private long _deadline;
+    private boolean _aborted;
+    private volatile boolean _stopped;
+
+    /**
+     * Results of the last solve
+     */
+    private long _nodes;
+    private int _lastScore;
+    private long _lastSolveTime;
+
+    /**
+     * EndgameSolver constructor, with the default threshold
+     */
+    public EndgameSolver() {
+        this(DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * EndgameSolver constructor
+     * @param threshold The number of empty cells at which the solver takes over
+     */
+    public EndgameSolver(int threshold) {
+        _threshold = threshold;
+    }
+
+    /**
+     * Checks whether the position has few enough empty cells for the solver
+     * @param board The board
+     * @return Whether or not the solver should be used
+     */
+    public boolean canSolve(BitBoard board) {
+        return Long.bitCount(board.getEmpty()) <= _threshold;
+    }
+
+    /**
+     * Finds the best move and the exact final disc differential
+     * @param board The board. It is not modified.
+     * @param color The color to move
+     * @param timeBudget The time budget in milliseconds
+     * @return The position of the best move, SearchEngine.PASS if there are no possible moves, or
+     *         UNSOLVED if the time ran out
+     */
+    public int solve(BitBoard board, char color, long timeBudget) {
+        long start = System.currentTimeMillis();
+        long player = board.getDiscs(color);
+        long opponent = board.getDiscs(color == 'b' ? 'w' : 'b');
+        int empties = Long.bitCount(board.getEmpty());
+
+        _deadline = start + timeBudget;
+        _aborted = false;
+        _stopped = false;
+        _nodes = 0;
+
+        long possibleMoves = BitBoard.getMoves(player, opponent);
+        int bestMove = SearchEngine.PASS;
+        int bestScore = -INFINITY;
+
+        if (possibleMoves == 0) {
+            bestScore = -solveDeep(opponent, player, -INFINITY, INFINITY, true, empties);
+        }
+        else {
+            int count = orderMoves(player, opponent, possibleMoves, empties);
+
+            for (int i = 0; i < count; i++) {
+                int move = _moves[empties][i];
+                long flips = BitBoard.getFlips(move, player, opponent);
+                int score = -solveDeep(opponent & ~flips, player | flips | (1L << move), -INFINITY, -bestScore, false, empties - 1);
+
+                if (_aborted)
+                    break;
+
+                if (score > bestScore) {
+                    bestScore = score;
+                    bestMove = move;
+                }
+            }
+        }
+
+        _lastSolveTime = System.currentTimeMillis() - start;
+
+        if (_aborted)
+            return UNSOLVED;
+
+        _lastScore = bestScore;
+        return bestMove;
+    }
+
+    /**
+     * Asks a running solve to stop as soon as possible
+     */
+    public void stop() {
+        _stopped = true;
+    }
+
+    /**
+     * Solves a position with more than four empty cells
+     * @param player The cells of the player to move
+     * @param opponent The cells of the opponent
+     * @param alpha The lower bound
+     * @param beta The upper bound
+     * @param passed Whether or not the previous move was a pass
+     * @param empties The number of empty cells
+     * @return The final disc differential, from the perspective of the player to move
+     */
+    private int solveDeep(long player, long opponent, int alpha, int beta, boolean passed, int empties) {
+        if (empties <= 4)
+            return solveShallow(player, opponent, alpha, beta, empties);
+
+        if (++_nodes % TIME_CHECK_INTERVAL == 0 && (_stopped || System.currentTimeMillis() >= _deadline))
+            _aborted = true;
+
+        if (_aborted)
+            return 0;
+
+        long moves = BitBoard.getMoves(player, opponent);
+
+        if (moves == 0) {
+            if (passed)
+                return getFinalScore(player, opponent, empties);
+
+            return -solveDeep(opponent, player, -beta, -alpha, true, empties);
+        }
+
+        int bestScore = -INFINITY;
+        int count = orderMoves(player, opponent, moves, empties);
+
+        for (int i = 0; i < count; i++) {
+            int move = _moves[empties][i];
+            long flips = BitBoard.getFlips(move, player, opponent);
+            int score = -solveDeep(opponent & ~flips, player | flips | (1L << move), -beta, -alpha, false, empties - 1);
+
+            if (score > bestScore) {
+                bestScore = score;
+
+                if (score > alpha) {
+                    alpha = score;
+
+                    if (alpha >= beta)
+                        break;
+                }
+            }
+        }
+
+        return bestScore;
+    }
+
+    /**
+     * Orders the moves of a position into the move list of its number of empty cells
+     * @param player The cells of the player to move
+     * @param opponent The cells of the opponent
+     * @param moves The possible moves
+     * @param empties The number of empty cells
+     * @return The number of moves
+     */
+    private int orderMoves(long player, long opponent, long moves, int empties) {
+        int[] list = _moves[empties];
+        int[] keys = _sortKeys[empties];
+        int parity = getParity(~(player | opponent));
+        int count = 0;
+
+        for (; moves != 0; moves &= moves - 1) {
+            int move = Long.numberOfTrailingZeros(moves);
+            int key = (parity & (1 << QUADRANTS[move])) != 0 ? 0 : 1;
+
+            if (empties >= FASTEST_FIRST_EMPTIES) {
+                long flips = BitBoard.getFlips(move, player, opponent);
+                key += 4 * Long.bitCount(BitBoard.getMoves(opponent & ~flips, player | flips | (1L << move)));
+            }
+
+            // Insertion sort, the lists are short
+            int i = count++;
+
+            for (; i > 0 && keys[i - 1] > key; i--) {
+                list[i] = list[i - 1];
+                keys[i] = keys[i - 1];
+            }
+
+            list[i] = move;
+            keys[i] = key;
+        }
+
+        return count;
+    }
+
+    /**
+     * Collects the last (at most four) empty cells and solves them with the dedicated routines
+     * @param player The cells of the player to move
+     * @param opponent The cells of the opponent
+     * @param alpha The lower bound
+     * @param beta The upper bound
+     * @param empties The number of empty cells
+     * @return The final disc differential, from the perspective of the player to move
+     */
+    private int solveShallow(long player, long opponent, int alpha, int beta, int empties) {
+        long empty = ~(player | opponent);
+        _nodes++;
+
+        if (empties == 0)
+            return getFinalScore(player, opponent, 0);
+
+        int s1 = Long.numberOfTrailingZeros(empty);
+        empty &= empty - 1;
+
+        if (empties == 1)
+            return solve1(player, opponent, s1);
+
+        int s2 = Long.numberOfTrailingZeros(empty);
+        empty &= empty - 1;
+
+        if (empties == 2)
+            return solve2(player, opponent, alpha, beta, s1, s2, false);
+
+        int s3 = Long.numberOfTrailingZeros(empty);
+        empty &= empty - 1;
+
+        if (empties == 3)
+            return solve3(player, opponent, alpha, beta, s1, s2, s3, false);
+
+        return solve4(player, opponent, alpha, beta, s1, s2, s3, Long.numberOfTrailingZeros(empty), false);
+    }
+
+    /**
+     * Solves a position with four empty cells. Cells in a quadrant with an odd number of empty cells
+     * are tried first.
+     */
+    private int solve4(long player, long opponent, int alpha, int beta, int s1, int s2, int s3, int s4, boolean passed) {
+        // With four empties, the parity of a quadrant is odd if it holds one or three of them
+        int q1 = QUADRANTS[s1];
+        int q2 = QUADRANTS[s2];
+        int q3 = QUADRANTS[s3];
+        int q4 = QUADRANTS[s4];
+
+        if (q1 == q2 && q3 != q4) {
+            // s1 and s2 share a quadrant (even), s3 and s4 are odd: try those first
+            int t = s1; s1 = s3; s3 = t;
+            t = s2; s2 = s4; s4 = t;
+        }
+        else if (q1 == q3 && q2 != q4) {
+            int t = s1; s1 = s2; s2 = s4; s4 = s3; s3 = t;
+        }
+        else if (q1 == q4 && q2 != q3) {
+            int t = s1; s1 = s2; s2 = s3; s3 = t;
+        }
+
+        int bestScore = -INFINITY;
+        long flips;
+
+        if ((flips = BitBoard.getFlips(s1, player, opponent)) != 0) {
+            bestScore = -solve3(opponent & ~flips, player | flips | (1L << s1), -beta, -alpha, s2, s3, s4, false);
+
+            if (bestScore >= beta)
+                return bestScore;
+            if (bestScore > alpha)
+                alpha = bestScore;
+        }
+
+        if ((flips = BitBoard.getFlips(s2, player, opponent)) != 0) {
+            int score = -solve3(opponent & ~flips, player | flips | (1L << s2), -beta, -alpha, s1, s3, s4, false);
+
+            if (score >= beta)
+                return score;
+            if (score > bestScore) {
+                bestScore = score;
+
+                if (score > alpha)
+                    alpha = score;
+            }
+        }
+
+        if ((flips = BitBoard.getFlips(s3, player, opponent)) != 0) {
+            int score = -solve3(opponent & ~flips, player | flips | (1L << s3), -beta, -alpha, s1, s2, s4, false);
+
+            if (score >= beta)
+                return score;
+            if (score > bestScore) {
+                bestScore = score;
+
+                if (score > alpha)
+                    alpha = score;
+            }
+        }
+
+        if ((flips = BitBoard.getFlips(s4, player, opponent)) != 0) {
+            int score = -solve3(opponent & ~flips, player | flips | (1L << s4), -beta, -alpha, s1, s2, s3, false);
+
+            if (score > bestScore)
+                bestScore = score;
+        }
+
+        if (bestScore == -INFINITY) {
+            if (passed)
+                return getFinalScore(player, opponent, 4);
+
+            return -solve4(opponent, player, -beta, -alpha, s1, s2, s3, s4, true);
+        }
+
+        return bestScore;
+    }
+
+    /**
+     * Solves a position with three empty cells
+     */
+    private int solve3(long player, long opponent, int alpha, int beta, int s1, int s2, int s3, boolean passed) {
+        _nodes++;
+
+        int bestScore = -INFINITY;
+        long flips;
+
+        if ((flips = BitBoard.getFlips(s1, player, opponent)) != 0) {
+            bestScore = -solve2(opponent & ~flips, player | flips | (1L << s1), -beta, -alpha, s2, s3, false);
+
+            if (bestScore >= beta)
+                return bestScore;
+            if (bestScore > alpha)
+                alpha = bestScore;
+        }
+
+        if ((flips = BitBoard.getFlips(s2, player, opponent)) != 0) {
+            int score = -solve2(opponent & ~flips, player | flips | (1L << s2), -beta, -alpha, s1, s3, false);
+
+            if (score >= beta)
+                return score;
+            if (score > bestScore) {
+                bestScore = score;
+
+                if (score > alpha)
+                    alpha = score;
+            }
+        }
+
+        if ((flips = BitBoard.getFlips(s3, player, opponent)) != 0) {
+            int score = -solve2(opponent & ~flips, player | flips | (1L << s3), -beta, -alpha, s1, s2, false);
+
+            if (score > bestScore)
+                bestScore = score;
+        }
+
+        if (bestScore == -INFINITY) {
+            if (passed)
+                return getFinalScore(player, opponent, 3);
+
+            return -solve3(opponent, player, -beta, -alpha, s1, s2, s3, true);
+        }
+
+        return bestScore;
+    }
+
+    /**
+     * Solves a position with two empty cells
+     */
+    private int solve2(long player, long opponent, int alpha, int beta, int s1, int s2, boolean passed) {
+        _nodes++;
+
+        int bestScore = -INFINITY;
+        long flips;
+
+        if ((flips = BitBoard.getFlips(s1, player, opponent)) != 0) {
+            bestScore = -solve1(opponent & ~flips, player | flips | (1L << s1), s2);
+
+            if (bestScore >= beta)
+                return bestScore;
+        }
+
+        if ((flips = BitBoard.getFlips(s2, player, opponent)) != 0) {
+            int score = -solve1(opponent & ~flips, player | flips | (1L << s2), s1);
+
+            if (score > bestScore)
+                bestScore = score;
+        }
+
+        if (bestScore == -INFINITY) {
+            if (passed)
+                return getFinalScore(player, opponent, 2);
+
+            return -solve2(opponent, player, -beta, -alpha, s1, s2, true);
+        }
+
+        return bestScore;
+    }
+
+    /**
+     * Solves a position with one empty cell. There is no need for bounds: the score is computed
+     * directly from the flips of whoever can play the last cell.
+     */
+    private int solve1(long player, long opponent, int s1) {
+        _nodes++;
+
+        long flips = BitBoard.getFlips(s1, player, opponent);
+
+        if (flips != 0)
+            return Long.bitCount(player | flips) + 1 - Long.bitCount(opponent & ~flips);
+
+        flips = BitBoard.getFlips(s1, opponent, player);
+
+        if (flips != 0)
+            return Long.bitCount(player & ~flips) - Long.bitCount(opponent | flips) - 1;
+
+        return getFinalScore(player, opponent, 1);
+    }
+
+    /**
+     * Returns the score of a finished game, where the empty cells go to the winner
+     * @param player The cells of the player to move
+     * @param opponent The cells of the opponent
+     * @param empties The number of empty cells
+     * @return The final disc differential, from the perspective of the player to move
+     */
+    private static int getFinalScore(long player, long opponent, int empties) {
+        int difference = Long.bitCount(player) - Long.bitCount(opponent);
+
+        if (difference > 0)
+            return difference + empties;
+        else if (difference < 0)
+            return difference - empties;
+
+        return 0;
+    }
+
+    /**
+     * Returns the quadrants with an odd number of empty cells
+     * @param empty The empty cells
+     * @return A bit for each quadrant with odd parity
+     */
+    private static int getParity(long empty) {
+        int parity = 0;
+
+        for (int quadrant = 0; quadrant < 4; quadrant++)
+            parity |= (Long.bitCount(empty & QUADRANT_MASKS[quadrant]) & 1) << quadrant;
+
+        return parity;
+    }
+
+    /**
+     * Returns the number of empty cells at which the solver takes over
+     * @return The threshold
+     */
+    public int getThreshold() {
+        return _threshold;
+    }
+
+    /**
+     * Sets the number of empty cells at which the solver takes over
+     * @param threshold The threshold
+     */
+    public void setThreshold(int threshold) {
+        _threshold = threshold;
+    }
+
+    /**
+     * Returns the exact final disc differential of the last solved position
+     * @return The disc differential, from the perspective of the color that was to move
+     */
+    public int getLastScore() {
+        return _lastScore;
+    }
+
+    /**
+     * Returns how long the last solve took
+     * @return The time in milliseconds
+     */
+    public long getLastSolveTime() {
+        return _lastSolveTime;
+    }
+
+    /**
+     * Returns the number of nodes visited during the last solve
+     * @return The number of nodes
+     */
+    public long getNodes() {
+        return _nodes;
+    }
+}
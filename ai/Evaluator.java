@@ -0,0 +1,63 @@
+/*
+ * Enjun
+ *
+ * @version     1.0 Beta 1
+ * @author      Rocking Stars
+ * @copyright   2018, Enjun
+ *
+ * Copyright 2018 RockingStars
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rockingstar.modules.Reversi.ai;
+
+import com.rockingstar.modules.Reversi.models.BitBoard;
+
+/**
+ * Scores positions for the search engine
+ * @author Rocking Stars
+ * @since 1.0 Beta 1
+ */
+public interface Evaluator {
+
+    /**
+     * Scores a position that isn't finished yet
+     * @param board The board
+     * @param color The color to move
+     * @return The score, from the perspective of the color to move. Higher is better.
+     */
+    int evaluate(BitBoard board, char color);
+
+    /**
+     * Prepares the evaluator for a board, before a search starts playing moves on it
+     * @param board The board
+     */
+    void reset(BitBoard board);
+
+    /**
+     * Called after a move was played with BitBoard.makeMove
+     * @param position The position of the move
+     * @param flips The flipped discs
+     * @param color The color that made the move
+     */
+    void onMove(int position, long flips, char color);
+
+    /**
+     * Called after a move was taken back with BitBoard.unmakeMove
+     * @param position The position of the move
+     * @param flips The flipped discs
+     * @param color The color that made the move
+     */
+    void onUndo(int position, long flips, char color);
+}
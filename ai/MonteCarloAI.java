@@ -0,0 +1,123 @@
+/*
+ * Enjun
+ *
+ * @version     1.0 Beta 1
+ * @author      Rocking Stars
+ * @copyright   2018, Enjun
+ *
+ * Copyright 2018 RockingStars
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rockingstar.modules.Reversi.ai;
+
+import com.rockingstar.engine.game.AI;
+import com.rockingstar.engine.game.Player;
+import com.rockingstar.engine.game.models.VectorXY;
+import com.rockingstar.modules.Reversi.models.BitBoard;
+import com.rockingstar.modules.Reversi.models.ReversiModel;
+
+import java.util.ArrayList;
+
+/**
+ * An AI player that picks its moves with Monte Carlo Tree Search on all available processors. The
+ * controller passes the played moves to the search, so the tree of one move is reused for the next.
+ * @author Rocking Stars
+ * @since 1.0 Beta 1
+ */
+public class MonteCarloAI extends Player implements AI {
+
+    /**
+     * The time the AI may spend on a move when none is set, in milliseconds
+     */
+    private static final long DEFAULT_MOVE_TIME = 5000;
+
+    /**
+     * The search
+     */
+    private MonteCarloTreeSearch _search;
+
+    /**
+     * The model of the game
+     */
+    private ReversiModel _model;
+
+    /**
+     * The time the AI may spend on a move, in milliseconds
+     */
+    private long _moveTime = DEFAULT_MOVE_TIME;
+
+    /**
+     * MonteCarloAI constructor
+     * @param username The username of the player
+     * @param character The character of the player
+     */
+    public MonteCarloAI(String username, char character) {
+        super(username, null, character);
+
+        _search = new MonteCarloTreeSearch(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Picks a move with the search on a copy of the board of the model, so it has to be called by the
+     * thread that plays the moves. The controller uses getMove(BitBoard, char) instead.
+     * @param player The player to move
+     * @param possibleMoves The possible moves
+     * @return The coordinates of the move
+     */
+    @Override
+    public VectorXY getMove(Player player, ArrayList<Integer> possibleMoves) {
+        int position = getMove(_model.getState().copy(), player.getCharacter());
+
+        if (!possibleMoves.contains(position))
+            position = possibleMoves.get(0);
+
+        return new VectorXY(position % 8, position / 8);
+    }
+
+    /**
+     * Picks a move with the search. The board is only read, so the caller can pass its own copy and
+     * keep playing on the model while the search runs.
+     * @param board The board
+     * @param color The color to move
+     * @return The position of the move, or SearchEngine.PASS if there is none
+     */
+    public int getMove(BitBoard board, char color) {
+        return _search.findMove(board, color, _moveTime);
+    }
+
+    /**
+     * Sets the model of the game
+     * @param model The model
+     */
+    public void setModel(ReversiModel model) {
+        _model = model;
+    }
+
+    /**
+     * Sets the time the AI may spend on a move
+     * @param moveTime The time in milliseconds
+     */
+    public void setMoveTime(long moveTime) {
+        _moveTime = moveTime;
+    }
+
+    /**
+     * Returns the search, which keeps its tree between moves
+     * @return The search
+     */
+    public MonteCarloTreeSearch getSearch() {
+        return _search;
+    }
+}
@@ -0,0 +1,614 @@
+/*
+ * Enjun
+ *
+ * @version     1.0 Beta 1
+ * @author      Rocking Stars
+ * @copyright   2018, Enjun
+ *
+ * Copyright 2018 RockingStars
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rockingstar.modules.Reversi.ai;
+
+import com.rockingstar.modules.Reversi.models.BitBoard;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Monte Carlo Tree Search with UCT selection and random playouts. The tree is stored in parallel
+ * arrays indexed by node, so it creates no objects while searching. The children of a node are a
+ * contiguous block of nodes, allocated at once when the node has been visited often enough.
+ *
+ * The tree is kept between moves: advance() follows the played moves down the tree, and the next
+ * search compacts the remaining subtree to the start of the arrays and continues with its visits.
+ *
+ * With more than one thread, all threads search the same tree. A thread counts its visit of every
+ * node on its path before the playout finishes (a virtual loss), so the other threads are steered
+ * to other parts of the tree in the meantime.
+ * @author Rocking Stars
+ * @since 1.0 Beta 1
+ */
+public class MonteCarloTreeSearch {
+
+    /**
+     * The default number of nodes, about 30 megabytes
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 20;
+
+    /**
+     * The exploration constant of UCT, for win rates between 0 and 1
+     */
+    private static final double EXPLORATION = 0.7;
+
+    /**
+     * The number of visits after which a node gets its children
+     */
+    private static final int EXPAND_THRESHOLD = 4;
+
+    /**
+     * The longest path through the tree: 60 moves and the passes between them
+     */
+    private static final int MAX_PATH = 128;
+
+    /**
+     * The number of iterations between checks of the clock
+     */
+    private static final int CHECK_INTERVAL = 64;
+
+    /**
+     * Values of the children array for nodes without children. Real children never start at 0,
+     * because children are always allocated after their parent.
+     */
+    private static final int UNEXPANDED = 0;
+    private static final int EXPANDING = -1;
+    private static final int TERMINAL = -2;
+
+    /**
+     * The root when the tree doesn't match the game anymore
+     */
+    private static final int NO_ROOT = -1;
+
+    /**
+     * The maximum number of nodes
+     */
+    private int _capacity;
+
+    /**
+     * The cells of the player to move and of the opponent in every node
+     */
+    private long[] _player;
+    private long[] _opponent;
+
+    /**
+     * The move that leads to every node, or SearchEngine.PASS
+     */
+    private byte[] _move;
+
+    /**
+     * The number of children of every node
+     */
+    private byte[] _childCount;
+
+    /**
+     * The first child of every node, or UNEXPANDED, EXPANDING or TERMINAL
+     */
+    private AtomicIntegerArray _children;
+
+    /**
+     * The visits of every node, including the running ones
+     */
+    private AtomicIntegerArray _visits;
+
+    /**
+     * The results of every node in half points (2 for a win, 1 for a draw), from the perspective of
+     * the player who made the move that leads to the node
+     */
+    private AtomicIntegerArray _wins;
+
+    /**
+     * The number of used nodes
+     */
+    private AtomicInteger _size = new AtomicInteger();
+
+    /**
+     * The new index of every node during compaction
+     */
+    private int[] _remap;
+
+    /**
+     * The root of the tree, or NO_ROOT
+     */
+    private int _root = NO_ROOT;
+
+    /**
+     * The playouts and the path through the tree of every thread
+     */
+    private PlayoutEngine.Playout[] _playouts;
+    private int[][] _paths;
+
+    /**
+     * Runs the helper threads, null when there is only one thread
+     */
+    private ExecutorService _executor;
+
+    /**
+     * The helper searches of the current move
+     */
+    private Future<?>[] _helpers;
+
+    /**
+     * Whether or not the search has to stop
+     */
+    private volatile boolean _stopped;
+
+    /**
+     * Whether or not the last search ran out of nodes
+     */
+    private volatile boolean _full;
+
+    /**
+     * Statistics of the last search
+     */
+    private int _lastReusedVisits;
+    private int _lastIterations;
+    private long _lastSearchTime;
+    private double _lastWinRate;
+
+    /**
+     * MonteCarloTreeSearch constructor
+     * @param threads The number of threads (at least 1)
+     */
+    public MonteCarloTreeSearch(int threads) {
+        this(threads, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * MonteCarloTreeSearch constructor
+     * @param threads The number of threads (at least 1)
+     * @param capacity The maximum number of nodes
+     */
+    public MonteCarloTreeSearch(int threads, int capacity) {
+        threads = Math.max(1, threads);
+
+        _capacity = capacity;
+        _player = new long[capacity];
+        _opponent = new long[capacity];
+        _move = new byte[capacity];
+        _childCount = new byte[capacity];
+        _children = new AtomicIntegerArray(capacity);
+        _visits = new AtomicIntegerArray(capacity);
+        _wins = new AtomicIntegerArray(capacity);
+        _remap = new int[capacity];
+
+        _playouts = new PlayoutEngine.Playout[threads];
+        _paths = new int[threads][MAX_PATH];
+        _helpers = new Future<?>[threads];
+
+        long seed = System.nanoTime();
+
+        for (int i = 0; i < threads; i++)
+            _playouts[i] = new PlayoutEngine.Playout(seed + i * 0x9e3779b97f4a7c15L);
+
+        if (threads > 1) {
+            _executor = Executors.newFixedThreadPool(threads - 1, runnable -> {
+                Thread thread = new Thread(runnable, "Reversi MCTS helper");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Finds the best move within a time budget
+     * @param board The board. It is not modified.
+     * @param color The color to move
+     * @param timeBudget The time budget in milliseconds
+     * @return The position of the move with the most visits, or SearchEngine.PASS if there are no possible moves
+     */
+    public synchronized int findMove(BitBoard board, char color, long timeBudget) {
+        long start = System.currentTimeMillis();
+        long deadline = start + timeBudget;
+        long player = board.getDiscs(color);
+        long opponent = board.getDiscs(color == 'b' ? 'w' : 'b');
+
+        if (BitBoard.getMoves(player, opponent) == 0)
+            return SearchEngine.PASS;
+
+        prepareRoot(player, opponent);
+
+        _lastReusedVisits = _visits.get(_root);
+        _stopped = false;
+        _full = false;
+
+        for (int i = 1; i < _playouts.length; i++) {
+            int thread = i;
+            _helpers[i] = _executor.submit(() -> run(thread, deadline));
+        }
+
+        run(0, deadline);
+        _stopped = true;
+
+        for (int i = 1; i < _playouts.length; i++) {
+            try {
+                _helpers[i].get();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            catch (ExecutionException e) {
+                e.getCause().printStackTrace();
+            }
+
+            _helpers[i] = null;
+        }
+
+        _lastIterations = _visits.get(_root) - _lastReusedVisits;
+        _lastSearchTime = System.currentTimeMillis() - start;
+
+        int best = getMostVisitedChild(_root);
+
+        if (best == NO_ROOT) {
+            // Not a single iteration finished, so any possible move will do
+            _lastWinRate = 0;
+            return Long.numberOfTrailingZeros(BitBoard.getMoves(player, opponent));
+        }
+
+        _lastWinRate = _wins.get(best) / (2.0 * Math.max(1, _visits.get(best)));
+
+        return _move[best];
+    }
+
+    /**
+     * Follows a played move down the tree, so the next search can reuse the subtree of the move.
+     * Passes of the player to move are followed automatically.
+     * @param position The position of the move
+     */
+    public synchronized void advance(int position) {
+        if (_root == NO_ROOT)
+            return;
+
+        int node = _root;
+        int first = _children.get(node);
+
+        if (first > 0 && _childCount[node] == 1 && _move[first] == SearchEngine.PASS && position != SearchEngine.PASS)
+            node = first;
+
+        _root = findChild(node, position);
+    }
+
+    /**
+     * Stops the running search, which then returns its best move so far
+     */
+    public void stop() {
+        _stopped = true;
+    }
+
+    /**
+     * Makes the root match the board: the current root, the opponent's pass from it, or a new tree.
+     * A reused subtree is compacted to the start of the arrays.
+     * @param player The cells of the player to move
+     * @param opponent The cells of the opponent
+     */
+    private void prepareRoot(long player, long opponent) {
+        if (_root != NO_ROOT && !matches(_root, player, opponent)) {
+            int pass = findChild(_root, SearchEngine.PASS);
+            _root = pass != NO_ROOT && matches(pass, player, opponent) ? pass : NO_ROOT;
+        }
+
+        if (_root == NO_ROOT) {
+            _size.set(1);
+            _root = 0;
+            initialize(0, player, opponent, SearchEngine.PASS);
+        }
+        else if (_root != 0) {
+            compact();
+        }
+    }
+
+    /**
+     * Moves the subtree of the root to the start of the arrays, dropping all other nodes. Children
+     * always come after their parent, so a node is in the subtree when it is the root or a child of
+     * an earlier node in the subtree, and every node moves to a lower index.
+     */
+    private void compact() {
+        int size = _size.get();
+        int next = 0;
+
+        Arrays.fill(_remap, _root, size, NO_ROOT);
+        _remap[_root] = 0;
+
+        for (int node = _root; node < size; node++) {
+            if (_remap[node] == NO_ROOT)
+                continue;
+
+            int first = _children.get(node);
+
+            for (int child = first; child > 0 && child < first + _childCount[node]; child++)
+                _remap[child] = 0;
+
+            int target = next++;
+            _remap[node] = target;
+
+            _player[target] = _player[node];
+            _opponent[target] = _opponent[node];
+            _move[target] = _move[node];
+            _childCount[target] = _childCount[node];
+            _children.set(target, first);
+            _visits.set(target, _visits.get(node));
+            _wins.set(target, _wins.get(node));
+        }
+
+        // The children still point to their old indices
+        for (int node = 0; node < next; node++) {
+            int first = _children.get(node);
+
+            if (first > 0)
+                _children.set(node, _remap[first]);
+        }
+
+        _size.set(next);
+        _root = 0;
+    }
+
+    /**
+     * Runs iterations until the deadline passes or the search is stopped
+     * @param thread The index of the thread
+     * @param deadline The deadline
+     */
+    private void run(int thread, long deadline) {
+        PlayoutEngine.Playout playout = _playouts[thread];
+        int[] path = _paths[thread];
+
+        for (int i = 0; !_stopped; i++) {
+            if (i % CHECK_INTERVAL == 0 && System.currentTimeMillis() >= deadline)
+                break;
+
+            iterate(playout, path);
+        }
+    }
+
+    /**
+     * Runs one iteration: selects a path to a leaf, expanding it when it was visited often enough,
+     * plays a random game from the leaf, and adds its result to every node on the path
+     * @param playout The playout of the thread
+     * @param path The path of the thread
+     */
+    private void iterate(PlayoutEngine.Playout playout, int[] path) {
+        int node = _root;
+        int length = 0;
+
+        path[length++] = node;
+        _visits.incrementAndGet(node);
+
+        while (true) {
+            int first = _children.get(node);
+
+            if (first == UNEXPANDED && (node == _root || _visits.get(node) >= EXPAND_THRESHOLD)) {
+                expand(node);
+                first = _children.get(node);
+            }
+
+            // A leaf, a finished game, or a node another thread is expanding
+            if (first <= 0)
+                break;
+
+            node = select(node, first);
+            path[length++] = node;
+            _visits.incrementAndGet(node);
+        }
+
+        int result = playout.play(_player[node], _opponent[node]);
+
+        // The result is from the perspective of the player to move, the node counts for the other player
+        int reward = result < 0 ? 2 : result == 0 ? 1 : 0;
+
+        for (int i = length - 1; i >= 0; i--) {
+            _wins.addAndGet(path[i], reward);
+            reward = 2 - reward;
+        }
+    }
+
+    /**
+     * Selects the child with the highest upper confidence bound. Unvisited children come first.
+     * @param node The node
+     * @param first The first child of the node
+     * @return The selected child
+     */
+    private int select(int node, int first) {
+        double logVisits = Math.log(_visits.get(node));
+        double bestScore = Double.NEGATIVE_INFINITY;
+        int best = first;
+
+        for (int child = first; child < first + _childCount[node]; child++) {
+            int visits = _visits.get(child);
+
+            if (visits == 0)
+                return child;
+
+            double score = _wins.get(child) / (2.0 * visits) + EXPLORATION * Math.sqrt(logVisits / visits);
+
+            if (score > bestScore) {
+                bestScore = score;
+                best = child;
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Allocates and initializes the children of a node. Only one thread expands a node; when the
+     * tree is full, the node stays a leaf.
+     * @param node The node
+     */
+    private void expand(int node) {
+        if (!_children.compareAndSet(node, UNEXPANDED, EXPANDING))
+            return;
+
+        long player = _player[node];
+        long opponent = _opponent[node];
+        long moves = BitBoard.getMoves(player, opponent);
+        int count;
+
+        if (moves != 0)
+            count = Long.bitCount(moves);
+        else if (BitBoard.getMoves(opponent, player) != 0)
+            count = 1;
+        else {
+            _children.set(node, TERMINAL);
+            return;
+        }
+
+        int first;
+
+        do {
+            first = _size.get();
+
+            if (first + count > _capacity) {
+                _full = true;
+                _children.set(node, UNEXPANDED);
+                return;
+            }
+        } while (!_size.compareAndSet(first, first + count));
+
+        if (moves == 0)
+            initialize(first, opponent, player, SearchEngine.PASS);
+
+        for (int child = first; moves != 0; moves &= moves - 1, child++) {
+            int position = Long.numberOfTrailingZeros(moves);
+            long flips = BitBoard.getFlips(position, player, opponent);
+
+            initialize(child, opponent & ~flips, player | flips | (1L << position), position);
+        }
+
+        _childCount[node] = (byte) count;
+
+        // Publishes the children to the other threads
+        _children.set(node, first);
+    }
+
+    /**
+     * Initializes a node without visits or children
+     * @param node The node
+     * @param player The cells of the player to move
+     * @param opponent The cells of the opponent
+     * @param move The move that leads to the node
+     */
+    private void initialize(int node, long player, long opponent, int move) {
+        _player[node] = player;
+        _opponent[node] = opponent;
+        _move[node] = (byte) move;
+        _childCount[node] = 0;
+        _children.set(node, UNEXPANDED);
+        _visits.set(node, 0);
+        _wins.set(node, 0);
+    }
+
+    /**
+     * Checks whether a node holds a position
+     * @param node The node
+     * @param player The cells of the player to move
+     * @param opponent The cells of the opponent
+     * @return Whether or not the node holds the position
+     */
+    private boolean matches(int node, long player, long opponent) {
+        return _player[node] == player && _opponent[node] == opponent;
+    }
+
+    /**
+     * Finds the child of a node reached by a move
+     * @param node The node
+     * @param position The position of the move
+     * @return The child, or NO_ROOT if the node has no such child
+     */
+    private int findChild(int node, int position) {
+        int first = _children.get(node);
+
+        for (int child = first; child > 0 && child < first + _childCount[node]; child++)
+            if (_move[child] == position)
+                return child;
+
+        return NO_ROOT;
+    }
+
+    /**
+     * Finds the child of a node with the most visits
+     * @param node The node
+     * @return The child, or NO_ROOT if the node has no visited children
+     */
+    private int getMostVisitedChild(int node) {
+        int first = _children.get(node);
+        int best = NO_ROOT;
+
+        for (int child = first; child > 0 && child < first + _childCount[node]; child++)
+            if (_visits.get(child) > 0 && (best == NO_ROOT || _visits.get(child) > _visits.get(best)))
+                best = child;
+
+        return best;
+    }
+
+    /**
+     * Returns the number of iterations of the last search
+     * @return The number of iterations
+     */
+    public int getLastIterations() {
+        return _lastIterations;
+    }
+
+    /**
+     * Returns the visits the root already had from earlier searches when the last search started
+     * @return The number of reused visits
+     */
+    public int getLastReusedVisits() {
+        return _lastReusedVisits;
+    }
+
+    /**
+     * Returns the win rate of the move of the last search
+     * @return The win rate between 0 and 1
+     */
+    public double getLastWinRate() {
+        return _lastWinRate;
+    }
+
+    /**
+     * Returns the number of used nodes
+     * @return The number of nodes
+     */
+    public int getSize() {
+        return _size.get();
+    }
+
+    /**
+     * Stops the helper threads. The search can't be used afterwards.
+     */
+    public void shutdown() {
+        if (_executor != null)
+            _executor.shutdownNow();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MCTS: %d iterations in %d ms (%d reused), %d of %d nodes%s, win rate %.1f%%",
+                _lastIterations, _lastSearchTime, _lastReusedVisits, _size.get(), _capacity,
+                _full ? " (full)" : "", _lastWinRate * 100);
+    }
+}
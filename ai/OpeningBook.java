@@ -0,0 +1,268 @@
+/*
+ * Enjun
+ *
+ * @version     1.0 Beta 1
+ * @author      Rocking Stars
+ * @copyright   2018, Enjun
+ *
+ * Copyright 2018 RockingStars
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rockingstar.modules.Reversi.ai;
+
+import com.rockingstar.modules.Reversi.models.BitBoard;
+import com.rockingstar.modules.Reversi.models.Symmetry;
+import com.rockingstar.modules.Reversi.models.Zobrist;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An opening book: the best known move of positions from the start of the game. The positions are
+ * stored in their canonical form (see Symmetry), so a line and its rotations and reflections share
+ * one entry.
+ *
+ * Book files are sorted binary files that are memory-mapped read-only and binary-searched, so a
+ * lookup touches a few pages and the book can hold millions of entries without using the heap. A
+ * book file is a header (the magic number, the version and the number of entries) followed by the
+ * entries sorted by key. Every entry is the key (the Zobrist hash of the canonical position, with
+ * the color to move), the move in the canonical orientation, the number of games it was played in,
+ * and the average final disc differential for the color that played it, in hundredths of a disc.
+ * All values are little-endian.
+ * @author Rocking Stars
+ * @since 1.0 Beta 1
+ */
+public class OpeningBook {
+
+    /**
+     * The magic number at the start of a book file ("RVOB")
+     */
+    public static final int MAGIC = 0x52564f42;
+
+    /**
+     * The version of the book file format
+     */
+    public static final int VERSION = 2;
+
+    /**
+     * The size of the header and of an entry, in bytes
+     */
+    public static final int HEADER_SIZE = 16;
+    public static final int ENTRY_SIZE = 16;
+
+    /**
+     * Returned by lookup if the position isn't in the book
+     */
+    public static final int NO_MOVE = -1;
+
+    /**
+     * Returned by find if the position isn't in the book
+     */
+    public static final long NOT_FOUND = -1L;
+
+    /**
+     * The classpath resource the book is loaded from, if it exists as a file
+     */
+    private static final String RESOURCE = "resources/ai/reversi_book.bin";
+
+    /**
+     * The mapped file, or null for an empty book
+     */
+    private ByteBuffer _buffer;
+
+    /**
+     * The number of entries
+     */
+    private long _size;
+
+    /**
+     * OpeningBook constructor
+     * @param buffer The contents of a book file, or null for an empty book
+     * @throws IOException If the contents aren't a book file
+     */
+    private OpeningBook(ByteBuffer buffer) throws IOException {
+        if (buffer == null)
+            return;
+
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+            throw new IOException("Not a book file");
+
+        if (buffer.getInt(4) != VERSION)
+            throw new IOException("Unsupported book file version");
+
+        _size = buffer.getLong(8);
+
+        if (HEADER_SIZE + _size * ENTRY_SIZE != buffer.capacity())
+            throw new IOException("The book file should have " + _size + " entries");
+
+        _buffer = buffer;
+    }
+
+    /**
+     * Maps a book file
+     * @param path The path of the book file
+     * @return The book
+     * @throws IOException If the file can't be mapped or isn't a book file
+     */
+    public static OpeningBook open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            return new OpeningBook(buffer);
+        }
+    }
+
+    /**
+     * Maps the book shipped on the classpath, or returns an empty book if there is none
+     * @return The book
+     */
+    public static OpeningBook loadDefault() {
+        URL resource = OpeningBook.class.getClassLoader().getResource(RESOURCE);
+
+        try {
+            // Only a plain file can be mapped, not an entry in a jar
+            if (resource != null && resource.getProtocol().equals("file"))
+                return open(Paths.get(resource.toURI()));
+        }
+        catch (IOException | URISyntaxException e) {
+            System.out.println("Could not load " + RESOURCE + ", playing without a book: " + e.getMessage());
+        }
+
+        return empty();
+    }
+
+    /**
+     * Returns an empty book
+     * @return The book
+     */
+    public static OpeningBook empty() {
+        try {
+            return new OpeningBook(null);
+        }
+        catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Looks up the book move of a position
+     * @param board The board
+     * @param color The color to move
+     * @return The position of the move, or NO_MOVE if the position isn't in the book
+     */
+    public int lookup(BitBoard board, char color) {
+        long entry = find(board, color);
+
+        return entry == NOT_FOUND ? NO_MOVE : getMove(entry);
+    }
+
+    /**
+     * Finds the entry of a position. The book keeps no state per lookup, so it can be shared by threads.
+     * @param board The board
+     * @param color The color to move
+     * @return The entry (its index and the symmetry of the position), or NOT_FOUND if the position isn't in the book
+     */
+    public long find(BitBoard board, char color) {
+        if (_size == 0)
+            return NOT_FOUND;
+
+        int symmetry = Symmetry.getCanonicalSymmetry(board.getBlack(), board.getWhite());
+        long key = getKey(Symmetry.transform(board.getBlack(), symmetry), Symmetry.transform(board.getWhite(), symmetry), color);
+        long low = 0;
+        long high = _size - 1;
+
+        while (low <= high) {
+            long middle = (low + high) >>> 1;
+            long entry = _buffer.getLong(getOffset(middle));
+
+            if (entry < key)
+                low = middle + 1;
+            else if (entry > key)
+                high = middle - 1;
+            else
+                return middle * Symmetry.COUNT + symmetry;
+        }
+
+        return NOT_FOUND;
+    }
+
+    /**
+     * Returns the move of an entry, in the orientation of the position that was looked up
+     * @param entry The entry, as returned by find
+     * @return The position of the move
+     */
+    public int getMove(long entry) {
+        int symmetry = (int) (entry % Symmetry.COUNT);
+
+        return Symmetry.untransformPosition(_buffer.getShort(getOffset(entry / Symmetry.COUNT) + 8), symmetry);
+    }
+
+    /**
+     * Returns the number of games the move of an entry was played in
+     * @param entry The entry, as returned by find
+     * @return The number of games
+     */
+    public int getGames(long entry) {
+        return _buffer.getShort(getOffset(entry / Symmetry.COUNT) + 10) & 0xffff;
+    }
+
+    /**
+     * Returns the average result of the move of an entry
+     * @param entry The entry, as returned by find
+     * @return The average final disc differential for the color that played it, in hundredths of a disc
+     */
+    public int getScore(long entry) {
+        return _buffer.getInt(getOffset(entry / Symmetry.COUNT) + 12);
+    }
+
+    /**
+     * Returns the offset of an entry in the file
+     * @param index The index of the entry
+     * @return The offset in bytes
+     */
+    private static int getOffset(long index) {
+        return (int) (HEADER_SIZE + index * ENTRY_SIZE);
+    }
+
+    /**
+     * Returns the number of entries
+     * @return The number of entries
+     */
+    public long size() {
+        return _size;
+    }
+
+    /**
+     * Returns the key of a position
+     * @param black The cells occupied by black
+     * @param white The cells occupied by white
+     * @param color The color to move
+     * @return The key
+     */
+    public static long getKey(long black, long white, char color) {
+        return Zobrist.hash(black, white) ^ (color == 'w' ? Zobrist.WHITE_TO_MOVE : 0L);
+    }
+}
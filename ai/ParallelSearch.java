@@ -0,0 +1,204 @@
+/*
+ * Enjun
+ *
+ * @version     1.0 Beta 1
+ * @author      Rocking Stars
+ * @copyright   2018, Enjun
+ *
+ * Copyright 2018 RockingStars
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rockingstar.modules.Reversi.ai;
+
+import com.rockingstar.modules.Reversi.models.BitBoard;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Runs a search on several threads at once (Lazy SMP). Every thread runs its own SearchEngine on its
+ * own copy of the board, and all of them share one transposition table, so the helper threads fill
+ * the table with results the main thread can use. Half of the helpers start one iteration deeper,
+ * so the threads don't all search the same nodes at the same time.
+ *
+ * The move of the main thread is returned. With one thread, the search runs on the calling thread
+ * and gives exactly the same result as a single SearchEngine.
+ *
+ * The engines can only run one search at a time, so findMove is synchronized: a second caller waits
+ * until the running search returned. stop() isn't, so it can always end the running search.
+ * @author Rocking Stars
+ * @since 1.0 Beta 1
+ */
+public class ParallelSearch {
+
+    /**
+     * The engines. The first one runs on the calling thread, the others are helpers.
+     */
+    private SearchEngine[] _engines;
+
+    /**
+     * The transposition table shared by all engines
+     */
+    private TranspositionTable _table;
+
+    /**
+     * Runs the helper engines, null when there is only one thread
+     */
+    private ExecutorService _executor;
+
+    /**
+     * The helper searches of the current move
+     */
+    private Future<?>[] _helpers;
+
+    /**
+     * ParallelSearch constructor
+     * @param evaluators Creates an evaluator for each thread
+     * @param table The transposition table shared by all threads
+     * @param threads The number of threads (at least 1)
+     */
+    public ParallelSearch(Supplier<Evaluator> evaluators, TranspositionTable table, int threads) {
+        threads = Math.max(1, threads);
+
+        _table = table;
+        _engines = new SearchEngine[threads];
+        _helpers = new Future<?>[threads];
+
+        for (int i = 0; i < threads; i++)
+            _engines[i] = new SearchEngine(evaluators.get(), table);
+
+        if (threads > 1) {
+            _executor = Executors.newFixedThreadPool(threads - 1, runnable -> {
+                Thread thread = new Thread(runnable, "Reversi search helper");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Finds the best move within a time budget
+     * @param board The board. It is not modified.
+     * @param color The color to move
+     * @param timeBudget The time budget in milliseconds
+     * @return The position of the best move, or SearchEngine.PASS if there are no possible moves
+     */
+    public int findMove(BitBoard board, char color, long timeBudget) {
+        return findMove(board, color, timeBudget, SearchEngine.MAX_DEPTH);
+    }
+
+    /**
+     * Finds the best move within a time budget and a maximum depth
+     * @param board The board. It is not modified.
+     * @param color The color to move
+     * @param timeBudget The time budget in milliseconds
+     * @param maxDepth The maximum depth
+     * @return The position of the best move, or SearchEngine.PASS if there are no possible moves
+     */
+    public synchronized int findMove(BitBoard board, char color, long timeBudget, int maxDepth) {
+        long deadline = System.currentTimeMillis() + timeBudget;
+
+        // Once per move, so an entry a helper stores can't be aged out by another engine starting
+        _table.newSearch();
+
+        for (int i = 1; i < _engines.length; i++) {
+            SearchEngine helper = _engines[i];
+            BitBoard copy = board.copy();
+            int startDepth = 1 + i % 2;
+
+            // Cleared here instead of in the helper, so a stop after the main search is never lost
+            helper.clearStop();
+            _helpers[i] = _executor.submit(() -> helper.search(copy, color, deadline, maxDepth, startDepth));
+        }
+
+        _engines[0].clearStop();
+        int move = _engines[0].search(board.copy(), color, deadline, maxDepth, 1);
+
+        for (int i = 1; i < _engines.length; i++)
+            _engines[i].stop();
+
+        for (int i = 1; i < _engines.length; i++) {
+            try {
+                _helpers[i].get();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            catch (ExecutionException e) {
+                e.getCause().printStackTrace();
+            }
+
+            _helpers[i] = null;
+        }
+
+        return move;
+    }
+
+    /**
+     * Asks a running search to stop as soon as possible
+     */
+    public void stop() {
+        for (SearchEngine engine : _engines)
+            engine.stop();
+    }
+
+    /**
+     * Stops the helper threads. The search can't be used afterwards.
+     */
+    public void shutdown() {
+        if (_executor != null)
+            _executor.shutdownNow();
+    }
+
+    /**
+     * Returns the main engine, which holds the principal variation and score of the last search
+     * @return The main engine
+     */
+    public SearchEngine getMainEngine() {
+        return _engines[0];
+    }
+
+    /**
+     * Returns the number of threads
+     * @return The number of threads
+     */
+    public int getThreads() {
+        return _engines.length;
+    }
+
+    /**
+     * Returns the transposition table
+     * @return The transposition table
+     */
+    public TranspositionTable getTable() {
+        return _table;
+    }
+
+    /**
+     * Returns the number of nodes all threads visited during the last search
+     * @return The number of nodes
+     */
+    public long getNodes() {
+        long nodes = 0;
+
+        for (SearchEngine engine : _engines)
+            nodes += engine.getNodes();
+
+        return nodes;
+    }
+}
@@ -0,0 +1,362 @@
+/*
+ * Enjun
+ *
+ * @version     1.0 Beta 1
+ * @author      Rocking Stars
+ * @copyright   2018, Enjun
+ *
+ * Copyright 2018 RockingStars
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rockingstar.modules.Reversi.ai;
+
+import com.rockingstar.modules.Reversi.models.BitBoard;
+import com.rockingstar.modules.Reversi.models.Symmetry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Scores positions with pattern weight tables. A pattern is a fixed set of cells (an edge, a corner
+ * region, a line or a diagonal), and the contents of its cells form a ternary code: every cell is a
+ * digit that is 0 (empty), 1 (black) or 2 (white). Each code has a weight in the table of its pattern
+ * type, so a position is scored with one table lookup per pattern instance.
+ *
+ * The codes are updated incrementally when moves are played and taken back, so the search never
+ * has to scan the board to evaluate a position. Besides the patterns, the score includes the
+ * difference in mobility and a bonus for parity (having the last move in the game).
+ * @author Rocking Stars
+ * @since 1.0 Beta 1
+ */
+public class PatternEvaluator implements Evaluator {
+
+    /**
+     * The pattern types, as lists of {x, y} cells in one orientation. The other instances of each
+     * type are its rotations and reflections.
+     */
+    private static final int[][][] PATTERN_TYPES = {
+            // Edge with the two X-squares
+            {{0, 0}, {1, 0}, {2, 0}, {3, 0}, {4, 0}, {5, 0}, {6, 0}, {7, 0}, {1, 1}, {6, 1}},
+            // 3x3 corner
+            {{0, 0}, {1, 0}, {2, 0}, {0, 1}, {1, 1}, {2, 1}, {0, 2}, {1, 2}, {2, 2}},
+            // 2x5 corner
+            {{0, 0}, {1, 0}, {2, 0}, {3, 0}, {4, 0}, {0, 1}, {1, 1}, {2, 1}, {3, 1}, {4, 1}},
+            // Second, third and fourth line
+            {{0, 1}, {1, 1}, {2, 1}, {3, 1}, {4, 1}, {5, 1}, {6, 1}, {7, 1}},
+            {{0, 2}, {1, 2}, {2, 2}, {3, 2}, {4, 2}, {5, 2}, {6, 2}, {7, 2}},
+            {{0, 3}, {1, 3}, {2, 3}, {3, 3}, {4, 3}, {5, 3}, {6, 3}, {7, 3}},
+            // Diagonals of length 8 to 4
+            {{0, 0}, {1, 1}, {2, 2}, {3, 3}, {4, 4}, {5, 5}, {6, 6}, {7, 7}},
+            {{0, 1}, {1, 2}, {2, 3}, {3, 4}, {4, 5}, {5, 6}, {6, 7}},
+            {{0, 2}, {1, 3}, {2, 4}, {3, 5}, {4, 6}, {5, 7}},
+            {{0, 3}, {1, 4}, {2, 5}, {3, 6}, {4, 7}},
+            {{0, 4}, {1, 5}, {2, 6}, {3, 7}}
+    };
+
+    /**
+     * The number of pattern types
+     */
+    public static final int TYPE_COUNT = PATTERN_TYPES.length;
+
+    /**
+     * The number of game phases with their own weights, based on the number of discs
+     */
+    public static final int PHASE_COUNT = 12;
+
+    /**
+     * The cells of every pattern instance, as positions
+     */
+    private static final int[][] INSTANCE_CELLS;
+
+    /**
+     * The pattern type of every instance
+     */
+    private static final int[] INSTANCE_TYPES;
+
+    /**
+     * For every position: the instances that contain it, and the power of three of its digit
+     */
+    private static final int[][] CELL_INSTANCES = new int[64][];
+    private static final int[][] CELL_POWERS = new int[64][];
+
+    static {
+        ArrayList<int[]> cells = new ArrayList<>();
+        ArrayList<Integer> types = new ArrayList<>();
+
+        for (int type = 0; type < TYPE_COUNT; type++) {
+            ArrayList<Long> seen = new ArrayList<>();
+
+            for (int symmetry = 0; symmetry < Symmetry.COUNT; symmetry++) {
+                int[] instance = new int[PATTERN_TYPES[type].length];
+                long mask = 0L;
+
+                for (int i = 0; i < instance.length; i++) {
+                    instance[i] = Symmetry.transformPosition(PATTERN_TYPES[type][i][1] * 8 + PATTERN_TYPES[type][i][0], symmetry);
+                    mask |= 1L << instance[i];
+                }
+
+                // Symmetric patterns map onto themselves, those are only counted once
+                if (!seen.contains(mask)) {
+                    seen.add(mask);
+                    cells.add(instance);
+                    types.add(type);
+                }
+            }
+        }
+
+        INSTANCE_CELLS = cells.toArray(new int[0][]);
+        INSTANCE_TYPES = new int[types.size()];
+
+        for (int i = 0; i < INSTANCE_TYPES.length; i++)
+            INSTANCE_TYPES[i] = types.get(i);
+
+        for (int position = 0; position < 64; position++) {
+            int count = 0;
+
+            for (int[] instance : INSTANCE_CELLS)
+                for (int cell : instance)
+                    if (cell == position)
+                        count++;
+
+            CELL_INSTANCES[position] = new int[count];
+            CELL_POWERS[position] = new int[count];
+            count = 0;
+
+            for (int instance = 0; instance < INSTANCE_CELLS.length; instance++) {
+                int power = 1;
+
+                for (int cell : INSTANCE_CELLS[instance]) {
+                    if (cell == position) {
+                        CELL_INSTANCES[position][count] = instance;
+                        CELL_POWERS[position][count++] = power;
+                    }
+
+                    power *= 3;
+                }
+            }
+        }
+    }
+
+    /**
+     * The number of pattern instances
+     */
+    public static final int INSTANCE_COUNT = INSTANCE_CELLS.length;
+
+    /**
+     * The weights
+     */
+    private PatternWeights _weights;
+
+    /**
+     * The current code of every pattern instance
+     */
+    private int[] _codes = new int[INSTANCE_COUNT];
+
+    /**
+     * The board that is evaluated
+     */
+    private BitBoard _board;
+
+    /**
+     * PatternEvaluator constructor
+     * @param weights The weights. They are only read, so one instance can be shared by many evaluators.
+     */
+    public PatternEvaluator(PatternWeights weights) {
+        _weights = weights;
+    }
+
+    /**
+     * Scores a position
+     * @param board The board, which should be the board given to reset
+     * @param color The color to move
+     * @return The score, from the perspective of the color to move
+     */
+    @Override
+    public int evaluate(BitBoard board, char color) {
+        long black = board.getBlack();
+        long white = board.getWhite();
+        int empties = Long.bitCount(~(black | white));
+        int phase = getPhase(empties);
+        int score = 0;
+
+        for (int instance = 0; instance < INSTANCE_COUNT; instance++)
+            score += _weights.getWeight(phase, INSTANCE_TYPES[instance], _codes[instance]);
+
+        score += _weights.getMobilityWeight(phase)
+                * (Long.bitCount(BitBoard.getMoves(black, white)) - Long.bitCount(BitBoard.getMoves(white, black)));
+
+        if (color != 'b')
+            score = -score;
+
+        // With an odd number of empty cells, the color to move gets the last move
+        if ((empties & 1) != 0)
+            score += _weights.getParityWeight(phase);
+
+        return score;
+    }
+
+    /**
+     * Computes the codes of all patterns from scratch
+     * @param board The board
+     */
+    @Override
+    public void reset(BitBoard board) {
+        _board = board;
+        computeCodes(board.getBlack(), board.getWhite(), _codes);
+    }
+
+    /**
+     * Updates the codes of the patterns that contain the move or a flipped disc
+     * @param position The position of the move
+     * @param flips The flipped discs
+     * @param color The color that made the move
+     */
+    @Override
+    public void onMove(int position, long flips, char color) {
+        int digit = color == 'b' ? 1 : 2;
+
+        // A flip changes a digit from 2 to 1 (black moved) or from 1 to 2 (white moved)
+        update(position, digit);
+        updateFlips(flips, digit == 1 ? -1 : 1);
+    }
+
+    /**
+     * Restores the codes of the patterns that contain the move or a flipped disc
+     * @param position The position of the move
+     * @param flips The flipped discs
+     * @param color The color that made the move
+     */
+    @Override
+    public void onUndo(int position, long flips, char color) {
+        int digit = color == 'b' ? 1 : 2;
+
+        update(position, -digit);
+        updateFlips(flips, digit == 1 ? 1 : -1);
+    }
+
+    /**
+     * Adds a value to the digit of a cell in all patterns that contain it
+     * @param position The position of the cell
+     * @param change The value to add
+     */
+    private void update(int position, int change) {
+        int[] instances = CELL_INSTANCES[position];
+        int[] powers = CELL_POWERS[position];
+
+        for (int i = 0; i < instances.length; i++)
+            _codes[instances[i]] += change * powers[i];
+    }
+
+    /**
+     * Adds a value to the digits of all flipped discs
+     * @param flips The flipped discs
+     * @param change The value to add
+     */
+    private void updateFlips(long flips, int change) {
+        for (; flips != 0; flips &= flips - 1)
+            update(Long.numberOfTrailingZeros(flips), change);
+    }
+
+    /**
+     * Returns the board this evaluator was last reset to
+     * @return The board
+     */
+    public BitBoard getBoard() {
+        return _board;
+    }
+
+    /**
+     * Computes the codes of all pattern instances of a position
+     * @param black The cells occupied by black
+     * @param white The cells occupied by white
+     * @param codes The array the codes are written to, of length INSTANCE_COUNT
+     */
+    public static void computeCodes(long black, long white, int[] codes) {
+        Arrays.fill(codes, 0);
+
+        for (int position = 0; position < 64; position++) {
+            long bit = 1L << position;
+            int digit = (black & bit) != 0 ? 1 : (white & bit) != 0 ? 2 : 0;
+
+            if (digit == 0)
+                continue;
+
+            int[] instances = CELL_INSTANCES[position];
+            int[] powers = CELL_POWERS[position];
+
+            for (int i = 0; i < instances.length; i++)
+                codes[instances[i]] += digit * powers[i];
+        }
+    }
+
+    /**
+     * Returns the game phase of a position
+     * @param empties The number of empty cells
+     * @return The phase, from 0 (opening) to PHASE_COUNT - 1 (end of the game)
+     */
+    public static int getPhase(int empties) {
+        return Math.min(PHASE_COUNT - 1, Math.max(0, 60 - empties) * PHASE_COUNT / 61);
+    }
+
+    /**
+     * Returns the pattern type of an instance
+     * @param instance The instance
+     * @return The pattern type
+     */
+    public static int getInstanceType(int instance) {
+        return INSTANCE_TYPES[instance];
+    }
+
+    /**
+     * Returns the cells of an instance
+     * @param instance The instance
+     * @return The positions of the cells, in digit order
+     */
+    public static int[] getInstanceCells(int instance) {
+        return INSTANCE_CELLS[instance].clone();
+    }
+
+    /**
+     * Returns the number of pattern instances that contain a cell
+     * @param position The position of the cell
+     * @return The number of instances
+     */
+    public static int getCellCoverage(int position) {
+        return CELL_INSTANCES[position].length;
+    }
+
+    /**
+     * Returns the number of cells of a pattern type
+     * @param type The pattern type
+     * @return The number of cells
+     */
+    public static int getTypeSize(int type) {
+        return PATTERN_TYPES[type].length;
+    }
+
+    /**
+     * Returns the number of codes of a pattern type, which is 3 to the power of its size
+     * @param type The pattern type
+     * @return The number of codes
+     */
+    public static int getCodeCount(int type) {
+        int count = 1;
+
+        for (int i = 0; i < getTypeSize(type); i++)
+            count *= 3;
+
+        return count;
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * Enjun
+ *
+ * @version     1.0 Beta 1
+ * @author      Rocking Stars
+ * @copyright   2018, Enjun
+ *
+ * Copyright 2018 RockingStars
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rockingstar.modules.Reversi.ai;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * The weight tables of the PatternEvaluator: one table per game phase and pattern type, indexed by
+ * the ternary code of the pattern, plus a mobility and a parity weight per phase. Weights are in
+ * hundredths of a disc, from black's perspective.
+ *
+ * Weight files are big-endian binary files: the magic number, the version, the number of phases
+ * and the number of pattern types, followed by every phase: its mobility and parity weight, and for
+ * every pattern type the number of codes and the weight of each code (all shorts, except for the
+ * counts, which are ints).
+ * @author Rocking Stars
+ * @since 1.0 Beta 1
+ */
+public class PatternWeights {
+
+    /**
+     * The magic number at the start of a weight file ("RVPW")
+     */
+    private static final int MAGIC = 0x52565057;
+
+    /**
+     * The version of the weight file format
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The classpath resource the weights are loaded from, if it exists
+     */
+    private static final String RESOURCE = "resources/ai/reversi_weights.bin";
+
+    /**
+     * The weights of every phase, pattern type and code
+     */
+    private short[][][] _tables;
+
+    /**
+     * The weight of one move of mobility, per phase
+     */
+    private short[] _mobility;
+
+    /**
+     * The weight of having the last move, per phase
+     */
+    private short[] _parity;
+
+    /**
+     * PatternWeights constructor
+     * @param tables The weights of every phase, pattern type and code
+     * @param mobility The mobility weight of every phase
+     * @param parity The parity weight of every phase
+     */
+    public PatternWeights(short[][][] tables, short[] mobility, short[] parity) {
+        _tables = tables;
+        _mobility = mobility;
+        _parity = parity;
+    }
+
+    /**
+     * Returns the weight of a pattern code
+     * @param phase The game phase
+     * @param type The pattern type
+     * @param code The code
+     * @return The weight
+     */
+    public int getWeight(int phase, int type, int code) {
+        return _tables[phase][type][code];
+    }
+
+    /**
+     * Returns the mobility weight
+     * @param phase The game phase
+     * @return The weight of one move of mobility
+     */
+    public int getMobilityWeight(int phase) {
+        return _mobility[phase];
+    }
+
+    /**
+     * Returns the parity weight
+     * @param phase The game phase
+     * @return The weight of having the last move
+     */
+    public int getParityWeight(int phase) {
+        return _parity[phase];
+    }
+
+    /**
+     * Loads the weights shipped on the classpath, or creates the default weights if there are none
+     * @return The weights
+     */
+    public static PatternWeights loadDefault() {
+        InputStream resource = PatternWeights.class.getClassLoader().getResourceAsStream(RESOURCE);
+
+        if (resource != null) {
+            try (InputStream input = resource) {
+                return load(input);
+            }
+            catch (IOException e) {
+                System.out.println("Could not load " + RESOURCE + ", using the default weights: " + e.getMessage());
+            }
+        }
+
+        return createDefault();
+    }
+
+    /**
+     * Loads weights from a weight file
+     * @param input The stream to read from
+     * @return The weights
+     * @throws IOException If the file can't be read or doesn't match the patterns of this version
+     */
+    public static PatternWeights load(InputStream input) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(input));
+
+        if (data.readInt() != MAGIC)
+            throw new IOException("Not a weight file");
+
+        if (data.readInt() != VERSION)
+            throw new IOException("Unsupported weight file version");
+
+        int phases = data.readInt();
+        int types = data.readInt();
+
+        if (phases != PatternEvaluator.PHASE_COUNT || types != PatternEvaluator.TYPE_COUNT)
+            throw new IOException("The weight file has " + phases + " phases and " + types + " pattern types");
+
+        short[][][] tables = new short[phases][types][];
+        short[] mobility = new short[phases];
+        short[] parity = new short[phases];
+
+        for (int phase = 0; phase < phases; phase++) {
+            mobility[phase] = data.readShort();
+            parity[phase] = data.readShort();
+
+            for (int type = 0; type < types; type++) {
+                int codes = data.readInt();
+
+                if (codes != PatternEvaluator.getCodeCount(type))
+                    throw new IOException("Pattern type " + type + " has " + codes + " codes");
+
+                tables[phase][type] = new short[codes];
+
+                for (int code = 0; code < codes; code++)
+                    tables[phase][type][code] = data.readShort();
+            }
+        }
+
+        return new PatternWeights(tables, mobility, parity);
+    }
+
+    /**
+     * Writes the weights as a weight file
+     * @param output The stream to write to. It is flushed, but not closed.
+     * @throws IOException If the file can't be written
+     */
+    public void save(OutputStream output) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(output));
+
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(_tables.length);
+        data.writeInt(PatternEvaluator.TYPE_COUNT);
+
+        for (int phase = 0; phase < _tables.length; phase++) {
+            data.writeShort(_mobility[phase]);
+            data.writeShort(_parity[phase]);
+
+            for (short[] table : _tables[phase]) {
+                data.writeInt(table.length);
+
+                for (short weight : table)
+                    data.writeShort(weight);
+            }
+        }
+
+        data.flush();
+    }
+
+    /**
+     * Creates untrained weights that value patterns by the cells they contain, like SimpleEvaluator.
+     * All phases share the same tables.
+     * @return The weights
+     */
+    public static PatternWeights createDefault() {
+        short[][] shared = new short[PatternEvaluator.TYPE_COUNT][];
+
+        for (int type = 0; type < PatternEvaluator.TYPE_COUNT; type++) {
+            int instance = 0;
+
+            while (PatternEvaluator.getInstanceType(instance) != type)
+                instance++;
+
+            int[] cells = PatternEvaluator.getInstanceCells(instance);
+            shared[type] = new short[PatternEvaluator.getCodeCount(type)];
+
+            for (int code = 0; code < shared[type].length; code++) {
+                int weight = 0;
+                int rest = code;
+
+                // A cell is in several patterns, so each of them gets its share of the cell value
+                for (int cell : cells) {
+                    int digit = rest % 3;
+                    rest /= 3;
+
+                    if (digit != 0)
+                        weight += (digit == 1 ? 10 : -10) * SimpleEvaluator.CELL_VALUES[cell] / PatternEvaluator.getCellCoverage(cell);
+                }
+
+                shared[type][code] = (short) weight;
+            }
+        }
+
+        short[][][] tables = new short[PatternEvaluator.PHASE_COUNT][][];
+        short[] mobility = new short[PatternEvaluator.PHASE_COUNT];
+        short[] parity = new short[PatternEvaluator.PHASE_COUNT];
+
+        for (int phase = 0; phase < PatternEvaluator.PHASE_COUNT; phase++) {
+            tables[phase] = shared;
+            mobility[phase] = 80;
+        }
+
+        return new PatternWeights(tables, mobility, parity);
+    }
+}
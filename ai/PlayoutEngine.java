@@ -0,0 +1,449 @@
+/*
+ * Enjun
+ *
+ * @version     1.0 Beta 1
+ * @author      Rocking Stars
+ * @copyright   2018, Enjun
+ *
+ * Copyright 2018 RockingStars
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rockingstar.modules.Reversi.ai;
+
+import com.rockingstar.modules.Reversi.models.BitBoard;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Plays complete random games (playouts) from a position, to estimate the win rate of every
+ * possible move. A playout works on two longs and allocates nothing, and every thread has its own
+ * xorshift random number generator, so one playout costs well under a microsecond per thread.
+ *
+ * The playouts of a batch are split evenly over the threads. With one thread, they run on the
+ * calling thread.
+ * @author Rocking Stars
+ * @since 1.0 Beta 1
+ */
+public class PlayoutEngine {
+
+    /**
+     * The number of counters per position: wins, draws and playouts
+     */
+    private static final int COUNTERS = 3;
+
+    /**
+     * The playouts of every thread. The first one runs on the calling thread.
+     */
+    private Playout[] _playouts;
+
+    /**
+     * The counters of every thread, indexed by position * COUNTERS
+     */
+    private long[][] _counters;
+
+    /**
+     * Runs the helper threads, null when there is only one thread
+     */
+    private ExecutorService _executor;
+
+    /**
+     * The helper tasks of the current batch
+     */
+    private Future<?>[] _helpers;
+
+    /**
+     * PlayoutEngine constructor
+     * @param threads The number of threads (at least 1)
+     */
+    public PlayoutEngine(int threads) {
+        this(threads, System.nanoTime());
+    }
+
+    /**
+     * PlayoutEngine constructor
+     * @param threads The number of threads (at least 1)
+     * @param seed The seed of the random number generators
+     */
+    public PlayoutEngine(int threads, long seed) {
+        threads = Math.max(1, threads);
+
+        _playouts = new Playout[threads];
+        _counters = new long[threads][64 * COUNTERS];
+        _helpers = new Future<?>[threads];
+
+        for (int i = 0; i < threads; i++)
+            _playouts[i] = new Playout(seed + i * 0x9e3779b97f4a7c15L);
+
+        if (threads > 1) {
+            _executor = Executors.newFixedThreadPool(threads - 1, runnable -> {
+                Thread thread = new Thread(runnable, "Reversi playout helper");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Plays a number of random games after every possible move
+     * @param board The board. It is not modified.
+     * @param color The color to move
+     * @param playoutsPerMove The number of playouts after every move
+     * @return The statistics of the moves
+     */
+    public Statistics evaluate(BitBoard board, char color, int playoutsPerMove) {
+        long player = board.getDiscs(color);
+        long opponent = board.getDiscs(color == 'b' ? 'w' : 'b');
+        long moves = BitBoard.getMoves(player, opponent);
+        int threads = _playouts.length;
+        long start = System.nanoTime();
+
+        for (int i = 1; i < threads; i++) {
+            int index = i;
+            int count = playoutsPerMove / threads + (i < playoutsPerMove % threads ? 1 : 0);
+
+            _helpers[i] = _executor.submit(() -> run(index, player, opponent, moves, count));
+        }
+
+        run(0, player, opponent, moves, playoutsPerMove / threads + (playoutsPerMove % threads > 0 ? 1 : 0));
+
+        for (int i = 1; i < threads; i++) {
+            try {
+                _helpers[i].get();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            catch (ExecutionException e) {
+                e.getCause().printStackTrace();
+            }
+
+            _helpers[i] = null;
+        }
+
+        Statistics statistics = new Statistics(moves, System.nanoTime() - start);
+
+        for (long[] counters : _counters)
+            for (int i = 0; i < counters.length; i++)
+                statistics._counters[i] += counters[i];
+
+        return statistics;
+    }
+
+    /**
+     * Finds the move with the highest win rate
+     * @param board The board. It is not modified.
+     * @param color The color to move
+     * @param playoutsPerMove The number of playouts after every move
+     * @return The position of the best move, or SearchEngine.PASS if there are no possible moves
+     */
+    public int findMove(BitBoard board, char color, int playoutsPerMove) {
+        return evaluate(board, color, playoutsPerMove).getBestMove();
+    }
+
+    /**
+     * Runs the playouts of one thread
+     * @param thread The index of the thread
+     * @param player The cells of the player to move
+     * @param opponent The cells of the opponent
+     * @param moves The possible moves
+     * @param count The number of playouts after every move
+     */
+    private void run(int thread, long player, long opponent, long moves, int count) {
+        Playout playout = _playouts[thread];
+        long[] counters = _counters[thread];
+
+        Arrays.fill(counters, 0L);
+
+        for (; moves != 0; moves &= moves - 1) {
+            int position = Long.numberOfTrailingZeros(moves);
+            long flips = BitBoard.getFlips(position, player, opponent);
+            long nextPlayer = player | flips | (1L << position);
+            long nextOpponent = opponent & ~flips;
+            int index = position * COUNTERS;
+
+            for (int i = 0; i < count; i++) {
+                // The opponent moves next, so the result is negated
+                int result = -playout.play(nextOpponent, nextPlayer);
+
+                if (result > 0)
+                    counters[index]++;
+                else if (result == 0)
+                    counters[index + 1]++;
+            }
+
+            counters[index + 2] += count;
+        }
+    }
+
+    /**
+     * Returns the playout of the calling thread, for use outside of the batches
+     * @return The playout
+     */
+    public Playout getPlayout() {
+        return _playouts[0];
+    }
+
+    /**
+     * Returns the number of threads
+     * @return The number of threads
+     */
+    public int getThreads() {
+        return _playouts.length;
+    }
+
+    /**
+     * Stops the helper threads. The engine can't be used for batches afterwards.
+     */
+    public void shutdown() {
+        if (_executor != null)
+            _executor.shutdownNow();
+    }
+
+    /**
+     * Plays random games on a pair of bitboards. An instance must only be used by one thread at a time.
+     * @author Rocking Stars
+     * @since 1.0 Beta 1
+     */
+    public static class Playout {
+
+        /**
+         * The state of the xorshift random number generator, never zero
+         */
+        private long _state;
+
+        /**
+         * The number of played games
+         */
+        private long _games;
+
+        /**
+         * Playout constructor
+         * @param seed The seed of the random number generator
+         */
+        public Playout(long seed) {
+            _state = seed == 0 ? 0x9e3779b97f4a7c15L : seed;
+        }
+
+        /**
+         * Plays random moves until neither player can move
+         * @param player The cells of the player to move
+         * @param opponent The cells of the opponent
+         * @return The final disc differential from the perspective of the player to move
+         */
+        public int play(long player, long opponent) {
+            boolean passed = false;
+            boolean swapped = false;
+
+            while (true) {
+                long moves = BitBoard.getMoves(player, opponent);
+
+                if (moves == 0) {
+                    if (passed)
+                        break;
+
+                    passed = true;
+                }
+                else {
+                    int position = pick(moves);
+                    long flips = BitBoard.getFlips(position, player, opponent);
+
+                    player |= flips | (1L << position);
+                    opponent &= ~flips;
+                    passed = false;
+                }
+
+                long next = opponent;
+                opponent = player;
+                player = next;
+                swapped = !swapped;
+            }
+
+            _games++;
+
+            int differential = Long.bitCount(player) - Long.bitCount(opponent);
+            return swapped ? -differential : differential;
+        }
+
+        /**
+         * Picks a random cell from a mask
+         * @param cells A non-empty mask
+         * @return The position of the picked cell
+         */
+        public int pick(long cells) {
+            int index = nextInt(Long.bitCount(cells));
+
+            for (int i = 0; i < index; i++)
+                cells &= cells - 1;
+
+            return Long.numberOfTrailingZeros(cells);
+        }
+
+        /**
+         * Returns a random number in a range
+         * @param bound The upper bound (exclusive), at most 64
+         * @return The random number
+         */
+        public int nextInt(int bound) {
+            long x = _state;
+
+            x ^= x << 13;
+            x ^= x >>> 7;
+            x ^= x << 17;
+            _state = x;
+
+            // Multiplying the high bits by the bound avoids the slow modulo
+            return (int) (((x >>> 32) * bound) >>> 32);
+        }
+
+        /**
+         * Returns the number of played games
+         * @return The number of games
+         */
+        public long getGames() {
+            return _games;
+        }
+    }
+
+    /**
+     * The results of the playouts of a batch, per move
+     * @author Rocking Stars
+     * @since 1.0 Beta 1
+     */
+    public static class Statistics {
+
+        /**
+         * The evaluated moves
+         */
+        private long _moves;
+
+        /**
+         * The wins, draws and playouts of every position, indexed by position * COUNTERS
+         */
+        private long[] _counters = new long[64 * COUNTERS];
+
+        /**
+         * The duration of the batch in nanoseconds
+         */
+        private long _time;
+
+        /**
+         * Statistics constructor
+         * @param moves The evaluated moves
+         * @param time The duration of the batch in nanoseconds
+         */
+        private Statistics(long moves, long time) {
+            _moves = moves;
+            _time = time;
+        }
+
+        /**
+         * Returns the evaluated moves
+         * @return A mask containing the moves
+         */
+        public long getMoves() {
+            return _moves;
+        }
+
+        /**
+         * Returns the number of playouts after a move
+         * @param position The position of the move
+         * @return The number of playouts
+         */
+        public long getPlayouts(int position) {
+            return _counters[position * COUNTERS + 2];
+        }
+
+        /**
+         * Returns the win rate of a move, counting draws as half a win
+         * @param position The position of the move
+         * @return The win rate between 0 and 1, or 0 if there were no playouts
+         */
+        public double getWinRate(int position) {
+            long playouts = getPlayouts(position);
+
+            if (playouts == 0)
+                return 0;
+
+            return (_counters[position * COUNTERS] + _counters[position * COUNTERS + 1] * 0.5) / playouts;
+        }
+
+        /**
+         * Returns the move with the highest win rate
+         * @return The position of the move, or SearchEngine.PASS if there are no moves
+         */
+        public int getBestMove() {
+            int best = SearchEngine.PASS;
+
+            for (long moves = _moves; moves != 0; moves &= moves - 1) {
+                int position = Long.numberOfTrailingZeros(moves);
+
+                if (best == SearchEngine.PASS || getWinRate(position) > getWinRate(best))
+                    best = position;
+            }
+
+            return best;
+        }
+
+        /**
+         * Returns the total number of playouts
+         * @return The number of playouts
+         */
+        public long getTotalPlayouts() {
+            long playouts = 0;
+
+            for (int position = 0; position < 64; position++)
+                playouts += getPlayouts(position);
+
+            return playouts;
+        }
+
+        /**
+         * Returns the number of playouts per second of the batch
+         * @return The playouts per second
+         */
+        public double getPlayoutsPerSecond() {
+            return getTotalPlayouts() * 1e9 / Math.max(1, _time);
+        }
+
+        /**
+         * Returns the duration of the batch
+         * @return The duration in nanoseconds
+         */
+        public long getTime() {
+            return _time;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+
+            builder.append(String.format("%d playouts in %.1f ms (%.0f playouts/sec)%n", getTotalPlayouts(),
+                    _time / 1e6, getPlayoutsPerSecond()));
+
+            for (long moves = _moves; moves != 0; moves &= moves - 1) {
+                int position = Long.numberOfTrailingZeros(moves);
+
+                builder.append(String.format("  %c%d: %5.1f%% of %d%n", (char) ('a' + position % 8), position / 8 + 1,
+                        getWinRate(position) * 100, getPlayouts(position)));
+            }
+
+            return builder.toString();
+        }
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * Enjun
+ *
+ * @version     1.0 Beta 1
+ * @author      Rocking Stars
+ * @copyright   2018, Enjun
+ *
+ * Copyright 2018 RockingStars
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rockingstar.modules.Reversi.ai;
+
+import com.rockingstar.modules.Reversi.models.BitBoard;
+import com.rockingstar.modules.Reversi.models.Zobrist;
+
+/**
+ * Searches on the opponent's time. After our move, the position after the reply we expect (the
+ * second move of the principal variation, or the move in the transposition table when the variation
+ * was cut short) is searched in the background. When the opponent plays
+ * that reply, the result of the ponder search is used and the time it ran is saved from our own
+ * clock. When the opponent plays something else, the ponder search is stopped, but whatever it
+ * stored in the transposition table stays there.
+ *
+ * A Ponderer shares its ParallelSearch with the regular search, so the two must never run at the
+ * same time: every call that leads to a regular search first stops the ponder search. The methods
+ * are called from the thread that plays our moves, the thread that receives the opponent's moves and
+ * the AI thread, so they are synchronized, and ParallelSearch.findMove waits for a running search
+ * instead of sharing its engines with it.
+ * @author Rocking Stars
+ * @since 1.0 Beta 1
+ */
+public class Ponderer {
+
+    /**
+     * The search
+     */
+    private ParallelSearch _search;
+
+    /**
+     * The thread of the ponder search, null if there is none
+     */
+    private Thread _thread;
+
+    /**
+     * The position that is pondered, and the color to move in it
+     */
+    private BitBoard _board;
+    private char _color;
+
+    /**
+     * The reply of the opponent that is expected, and whether or not the opponent played it
+     */
+    private int _predictedMove;
+    private boolean _hit;
+
+    /**
+     * When the ponder search started and finished, in ms since the epoch
+     */
+    private long _start;
+    private volatile long _end;
+
+    /**
+     * The result of the ponder search: the best move and the depth it was completed to
+     */
+    private volatile int _move;
+    private volatile int _completedDepth;
+
+    /**
+     * The number of pondered moves and hits, and the time saved by the hits, in ms
+     */
+    private int _ponders;
+    private int _hits;
+    private long _savedTime;
+
+    /**
+     * Ponderer constructor
+     * @param search The search, which is shared with the regular search
+     */
+    public Ponderer(ParallelSearch search) {
+        _search = search;
+    }
+
+    /**
+     * Starts pondering after our move. Does nothing if no reply of the opponent can be predicted.
+     * @param board The board after our move. It is copied, so it may change afterwards.
+     * @param color Our color
+     * @param move The position of our move, which should be the first move of the principal variation
+     * @param maxTime The longest time the ponder search may run, in milliseconds
+     * @return Whether or not pondering started
+     */
+    public synchronized boolean start(BitBoard board, char color, int move, long maxTime) {
+        stop();
+
+        int[] variation = _search.getMainEngine().getPrincipalVariation();
+        char opponent = color == 'b' ? 'w' : 'b';
+
+        // After a book move or a solved endgame, the variation belongs to an older search
+        if (variation.length == 0 || variation[0] != move)
+            return false;
+
+        int reply = variation.length > 1 ? variation[1] : getTableMove(board, opponent);
+
+        if (reply < 0 || reply >= 64 || (board.getMoves(opponent) & 1L << reply) == 0)
+            return false;
+
+        _board = board.copy();
+        _board.makeMove(reply, opponent);
+        _color = color;
+        _predictedMove = reply;
+        _hit = false;
+        _move = SearchEngine.PASS;
+        _completedDepth = 0;
+        _start = System.currentTimeMillis();
+        _end = 0;
+        _ponders++;
+
+        BitBoard ponderBoard = _board;
+
+        _thread = new Thread(() -> {
+            _move = _search.findMove(ponderBoard, color, maxTime);
+            _completedDepth = _search.getMainEngine().getCompletedDepth();
+            _end = System.currentTimeMillis();
+        }, "Reversi ponder");
+        _thread.setDaemon(true);
+        _thread.start();
+
+        return true;
+    }
+
+    /**
+     * Returns the best move the transposition table knows for a position
+     * @param board The board
+     * @param color The color to move
+     * @return The position of the move, or -1 if the table has none
+     */
+    private int getTableMove(BitBoard board, char color) {
+        long entry = _search.getTable().probe(board.getHash() ^ (color == 'w' ? Zobrist.WHITE_TO_MOVE : 0L));
+
+        if (entry == TranspositionTable.NOT_FOUND || TranspositionTable.getMove(entry) == TranspositionTable.NO_MOVE)
+            return -1;
+
+        return TranspositionTable.getMove(entry);
+    }
+
+    /**
+     * Tells the ponderer which move the opponent played. On a miss, the ponder search is stopped.
+     * @param position The position of the move
+     */
+    public synchronized void opponentMoved(int position) {
+        if (_thread == null)
+            return;
+
+        _hit = position == _predictedMove;
+
+        if (!_hit)
+            stop();
+    }
+
+    /**
+     * Finishes a ponder hit: stops the ponder search and returns its move, if it was pondering the
+     * given position
+     * @param board The current board
+     * @param color The color to move
+     * @return The best move of the ponder search, or SearchEngine.PASS if there was no ponder hit
+     */
+    public synchronized int finish(BitBoard board, char color) {
+        boolean hit = _hit && _thread != null && color == _color
+                && board.getBlack() == _board.getBlack() && board.getWhite() == _board.getWhite();
+
+        stop();
+        _hit = false;
+
+        if (!hit || _move == SearchEngine.PASS)
+            return SearchEngine.PASS;
+
+        _hits++;
+
+        return _move;
+    }
+
+    /**
+     * Returns how long the last ponder search ran
+     * @return The time in milliseconds
+     */
+    public synchronized long getLastPonderTime() {
+        return _end == 0 ? 0 : _end - _start;
+    }
+
+    /**
+     * Returns the depth the last ponder search completed
+     * @return The depth
+     */
+    public synchronized int getLastCompletedDepth() {
+        return _completedDepth;
+    }
+
+    /**
+     * Records the time a ponder hit saved from our clock
+     * @param time The time in milliseconds
+     */
+    public synchronized void addSavedTime(long time) {
+        _savedTime += time;
+    }
+
+    /**
+     * Stops the ponder search and waits for its thread to finish
+     */
+    public synchronized void stop() {
+        if (_thread == null)
+            return;
+
+        // The search clears its stop flag when it starts, so keep asking until the thread is done
+        try {
+            while (_thread.isAlive()) {
+                _search.stop();
+                _thread.join(10);
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (_end == 0)
+            _end = System.currentTimeMillis();
+
+        _thread = null;
+    }
+
+    /**
+     * Returns whether or not a ponder search is running
+     * @return Whether or not a ponder search is running
+     */
+    public synchronized boolean isPondering() {
+        return _thread != null && _thread.isAlive();
+    }
+
+    /**
+     * Returns the statistics of the game so far
+     * @return The number of pondered moves, the hit rate and the time saved
+     */
+    @Override
+    public synchronized String toString() {
+        return String.format("Pondered %d moves, %d hits (%.0f%%), %d ms saved", _ponders, _hits,
+                _ponders == 0 ? 0.0 : 100.0 * _hits / _ponders, _savedTime);
+    }
+}
@@ -0,0 +1,468 @@
+/*
+ * Enjun
+ *
+ * @version     1.0 Beta 1
+ * @author      Rocking Stars
+ * @copyright   2018, Enjun
+ *
+ * Copyright 2018 RockingStars
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rockingstar.modules.Reversi.ai;
+
+import com.rockingstar.modules.Reversi.models.BitBoard;
+import com.rockingstar.modules.Reversi.models.Zobrist;
+
+/**
+ * Finds moves with a negamax search with alpha-beta pruning. The search is iteratively deepened
+ * until the time budget runs out, after which the best move of the deepest search is returned.
+ * Moves of the principal variation of the previous iteration are searched first.
+ * @author Rocking Stars
+ * @since 1.0 Beta 1
+ */
+public class SearchEngine {
+
+    /**
+     * The move that is returned when the color to move has to pass
+     */
+    public static final int PASS = 64;
+
+    /**
+     * Scores of finished games are offset by this value, so that they beat any evaluation
+     */
+    public static final int WIN_SCORE = 100000;
+
+    /**
+     * A score that is higher than any real score
+     */
+    private static final int INFINITY = 1000000;
+
+    /**
+     * The maximum search depth. Passes don't count as depth, so plies can be twice as deep.
+     */
+    public static final int MAX_DEPTH = 60;
+
+    /**
+     * The maximum number of plies from the root
+     */
+    private static final int MAX_PLY = 2 * MAX_DEPTH + 2;
+
+    /**
+     * The memory budget of the default transposition table, in megabytes
+     */
+    public static final int DEFAULT_TABLE_SIZE = 64;
+
+    /**
+     * The time is checked once every this many nodes
+     */
+    private static final int TIME_CHECK_INTERVAL = 1024;
+
+    /**
+     * The order in which moves are tried after the principal variation: corners first, the cells
+     * next to the corners last
+     */
+    private static final int[] MOVE_ORDER = {
+             0,  7, 56, 63,
+             2,  5, 16, 23, 40, 47, 58, 61,
+             3,  4, 24, 31, 32, 39, 59, 60,
+            18, 21, 42, 45,
+            19, 20, 26, 29, 34, 37, 43, 44,
+            10, 11, 12, 13, 17, 22, 25, 30, 33, 38, 41, 46, 50, 51, 52, 53,
+             1,  6,  8, 15, 48, 55, 57, 62,
+             9, 14, 49, 54,
+            27, 28, 35, 36
+    };
+
+    /**
+     * Scores positions at the leaves of the search
+     */
+    private Evaluator _evaluator;
+
+    /**
+     * Results of earlier searches, shared between iterations (and between moves)
+     */
+    private TranspositionTable _table;
+
+    /**
+     * The board that is searched, modified in place with makeMove and unmakeMove
+     */
+    private BitBoard _board;
+
+    /**
+     * The time (in ms since the epoch) at which the search has to stop
+     */
+    private long _deadline;
+
+    /**
+     * Whether or not another thread asked the search to stop
+     */
+    private volatile boolean _stopped;
+
+    /**
+     * Whether or not the current iteration ran out of time
+     */
+    private boolean _aborted;
+
+    /**
+     * The number of visited nodes
+     */
+    private long _nodes;
+
+    /**
+     * The principal variation of each ply, filled during the search (triangular table)
+     */
+    private int[][] _pvTable = new int[MAX_PLY][MAX_PLY];
+    private int[] _pvLength = new int[MAX_PLY];
+
+    /**
+     * The principal variation of the last completed iteration
+     */
+    private int[] _previousPV = new int[MAX_PLY];
+    private int _previousPVLength;
+
+    /**
+     * Whether or not the search is still on the principal variation of the previous iteration
+     */
+    private boolean _followPV;
+
+    /**
+     * Results of the last search
+     */
+    private int _completedDepth;
+    private int _bestScore;
+
+    /**
+     * SearchEngine constructor, with a transposition table of the default size
+     * @param evaluator The evaluation function
+     */
+    public SearchEngine(Evaluator evaluator) {
+        this(evaluator, new TranspositionTable(DEFAULT_TABLE_SIZE));
+    }
+
+    /**
+     * SearchEngine constructor
+     * @param evaluator The evaluation function
+     * @param table The transposition table
+     */
+    public SearchEngine(Evaluator evaluator, TranspositionTable table) {
+        _evaluator = evaluator;
+        _table = table;
+    }
+
+    /**
+     * Finds the best move within a time budget
+     * @param board The board. It is modified during the search, but restored afterwards.
+     * @param color The color to move
+     * @param timeBudget The time budget in milliseconds
+     * @return The position of the best move, or PASS if there are no possible moves
+     */
+    public int findMove(BitBoard board, char color, long timeBudget) {
+        return findMove(board, color, timeBudget, MAX_DEPTH);
+    }
+
+    /**
+     * Finds the best move within a time budget and a maximum depth
+     * @param board The board. It is modified during the search, but restored afterwards.
+     * @param color The color to move
+     * @param timeBudget The time budget in milliseconds
+     * @param maxDepth The maximum depth
+     * @return The position of the best move, or PASS if there are no possible moves
+     */
+    public int findMove(BitBoard board, char color, long timeBudget, int maxDepth) {
+        _stopped = false;
+        _table.newSearch();
+        return search(board, color, System.currentTimeMillis() + timeBudget, maxDepth, 1);
+    }
+
+    /**
+     * Runs the iterative deepening search. Unlike findMove, this doesn't clear an earlier stop request,
+     * so a search that is stopped before it starts returns right away, and it doesn't start a new
+     * generation in the transposition table: the engines of a parallel search share one generation.
+     * @param board The board. It is modified during the search, but restored afterwards.
+     * @param color The color to move
+     * @param deadline The time (in ms since the epoch) at which the search has to stop
+     * @param maxDepth The maximum depth
+     * @param startDepth The depth of the first iteration
+     * @return The position of the best move, or PASS if there are no possible moves
+     */
+    int search(BitBoard board, char color, long deadline, int maxDepth, int startDepth) {
+        _board = board;
+        _deadline = deadline;
+        _aborted = false;
+        _nodes = 0;
+        _previousPVLength = 0;
+        _completedDepth = 0;
+        _bestScore = 0;
+        _evaluator.reset(board);
+
+        long moves = board.getMoves(color);
+
+        if (moves == 0)
+            return PASS;
+
+        // Until the first iteration completes, any possible move is better than none
+        int bestMove = Long.numberOfTrailingZeros(moves);
+
+        if (Long.bitCount(moves) == 1)
+            return bestMove;
+
+        int emptyCells = Long.bitCount(board.getEmpty());
+
+        for (int depth = startDepth; depth <= Math.min(maxDepth, emptyCells); depth++) {
+            _followPV = true;
+            int score = negamax(color, depth, -INFINITY, INFINITY, 0, false);
+
+            // An aborted iteration is only trusted if it already searched the previous best move
+            if (_aborted && _pvLength[0] == 0)
+                break;
+
+            bestMove = _pvTable[0][0];
+            _bestScore = score;
+
+            if (_aborted)
+                break;
+
+            _completedDepth = depth;
+            _previousPVLength = _pvLength[0];
+            System.arraycopy(_pvTable[0], 0, _previousPV, 0, _previousPVLength);
+
+            // There is no need to search deeper once the outcome of the game is known
+            if (Math.abs(score) >= WIN_SCORE)
+                break;
+        }
+
+        return bestMove;
+    }
+
+    /**
+     * Asks a running search to stop as soon as possible. The search still returns its best move.
+     */
+    public void stop() {
+        _stopped = true;
+    }
+
+    /**
+     * Clears an earlier stop request, without starting a search
+     */
+    void clearStop() {
+        _stopped = false;
+    }
+
+    /**
+     * Searches a position
+     * @param color The color to move
+     * @param depth The remaining depth
+     * @param alpha The lower bound
+     * @param beta The upper bound
+     * @param ply The distance from the root
+     * @param passed Whether or not the previous move was a pass
+     * @return The score of the position, from the perspective of the color to move
+     */
+    private int negamax(char color, int depth, int alpha, int beta, int ply, boolean passed) {
+        _pvLength[ply] = 0;
+
+        if (++_nodes % TIME_CHECK_INTERVAL == 0 && (_stopped || System.currentTimeMillis() >= _deadline))
+            _aborted = true;
+
+        if (_aborted)
+            return 0;
+
+        long moves = _board.getMoves(color);
+        char opponent = color == 'b' ? 'w' : 'b';
+
+        if (moves == 0) {
+            if (passed || _board.getMoves(opponent) == 0)
+                return getFinalScore(color);
+
+            int score = -negamax(opponent, depth, -beta, -alpha, ply + 1, true);
+            updatePV(ply, PASS);
+
+            return score;
+        }
+
+        if (depth == 0) {
+            _followPV = false;
+            return _evaluator.evaluate(_board, color);
+        }
+
+        long key = _board.getHash() ^ (color == 'w' ? Zobrist.WHITE_TO_MOVE : 0L);
+        long entry = _table.probe(key);
+        int firstMove = -1;
+
+        if (entry != TranspositionTable.NOT_FOUND) {
+            firstMove = TranspositionTable.getMove(entry);
+
+            if (ply > 0 && TranspositionTable.getDepth(entry) >= depth) {
+                int score = TranspositionTable.getScore(entry);
+                int bound = TranspositionTable.getBound(entry);
+
+                if (bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER_BOUND && score >= beta)
+                        || (bound == TranspositionTable.UPPER_BOUND && score <= alpha)) {
+                    _followPV = false;
+                    return score;
+                }
+            }
+        }
+
+        // The principal variation goes before the move from the table
+        if (_followPV && ply < _previousPVLength)
+            firstMove = _previousPV[ply];
+
+        int originalAlpha = alpha;
+        int bestScore = -INFINITY;
+        int bestMove = TranspositionTable.NO_MOVE;
+
+        if (firstMove >= 0 && firstMove < PASS && (moves & (1L << firstMove)) != 0) {
+            bestScore = searchMove(color, firstMove, depth, alpha, beta, ply);
+            bestMove = firstMove;
+            moves &= ~(1L << firstMove);
+
+            if (_aborted)
+                return 0;
+
+            if (bestScore > alpha) {
+                alpha = bestScore;
+                updatePV(ply, firstMove);
+            }
+        }
+
+        _followPV = false;
+
+        for (int i = 0; i < MOVE_ORDER.length && moves != 0 && alpha < beta; i++) {
+            int position = MOVE_ORDER[i];
+
+            if ((moves & (1L << position)) == 0)
+                continue;
+
+            moves &= ~(1L << position);
+            int score = searchMove(color, position, depth, alpha, beta, ply);
+
+            // At the root, the moves that were completed still give a usable score
+            if (_aborted)
+                return ply == 0 ? bestScore : 0;
+
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = position;
+
+                if (score > alpha) {
+                    alpha = score;
+                    updatePV(ply, position);
+                }
+            }
+        }
+
+        int bound = bestScore <= originalAlpha ? TranspositionTable.UPPER_BOUND
+                : bestScore >= beta ? TranspositionTable.LOWER_BOUND : TranspositionTable.EXACT;
+        _table.store(key, depth, bound, bestScore, bestMove);
+
+        return bestScore;
+    }
+
+    /**
+     * Plays a move, searches the resulting position and takes the move back
+     * @param color The color to move
+     * @param position The position of the move
+     * @param depth The remaining depth
+     * @param alpha The lower bound
+     * @param beta The upper bound
+     * @param ply The distance from the root
+     * @return The score of the move, from the perspective of the color to move
+     */
+    private int searchMove(char color, int position, int depth, int alpha, int beta, int ply) {
+        long undo = _board.makeMove(position, color);
+        _evaluator.onMove(position, undo, color);
+
+        int score = -negamax(color == 'b' ? 'w' : 'b', depth - 1, -beta, -alpha, ply + 1, false);
+
+        _board.unmakeMove(position, undo, color);
+        _evaluator.onUndo(position, undo, color);
+
+        return score;
+    }
+
+    /**
+     * Makes a move the first move of the principal variation at a certain ply
+     * @param ply The ply
+     * @param move The move
+     */
+    private void updatePV(int ply, int move) {
+        _pvTable[ply][ply] = move;
+        int length = _pvLength[ply + 1];
+
+        System.arraycopy(_pvTable[ply + 1], ply + 1, _pvTable[ply], ply + 1, length);
+        _pvLength[ply] = length + 1;
+    }
+
+    /**
+     * Returns the score of a finished game
+     * @param color The color to move
+     * @return The score, from the perspective of the color to move
+     */
+    private int getFinalScore(char color) {
+        int difference = _board.getCount(color) - _board.getCount(color == 'b' ? 'w' : 'b');
+
+        if (difference > 0)
+            return WIN_SCORE + difference;
+        else if (difference < 0)
+            return -WIN_SCORE + difference;
+
+        return 0;
+    }
+
+    /**
+     * Returns the principal variation of the last completed iteration
+     * @return The moves of the principal variation, PASS for passes
+     */
+    public int[] getPrincipalVariation() {
+        int[] pv = new int[_previousPVLength];
+        System.arraycopy(_previousPV, 0, pv, 0, _previousPVLength);
+
+        return pv;
+    }
+
+    /**
+     * Returns the depth of the last completed iteration
+     * @return The depth
+     */
+    public int getCompletedDepth() {
+        return _completedDepth;
+    }
+
+    /**
+     * Returns the score of the best move of the last search
+     * @return The score
+     */
+    public int getBestScore() {
+        return _bestScore;
+    }
+
+    /**
+     * Returns the transposition table
+     * @return The transposition table
+     */
+    public TranspositionTable getTable() {
+        return _table;
+    }
+
+    /**
+     * Returns the number of nodes visited during the last search
+     * @return The number of nodes
+     */
+    public long getNodes() {
+        return _nodes;
+    }
+}
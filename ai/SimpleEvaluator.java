@@ -0,0 +1,103 @@
+/*
+ * Enjun
+ *
+ * @version     1.0 Beta 1
+ * @author      Rocking Stars
+ * @copyright   2018, Enjun
+ *
+ * Copyright 2018 RockingStars
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rockingstar.modules.Reversi.ai;
+
+import com.rockingstar.modules.Reversi.models.BitBoard;
+
+/**
+ * Scores positions with a table of cell values and the difference in mobility
+ * @author Rocking Stars
+ * @since 1.0 Beta 1
+ */
+public class SimpleEvaluator implements Evaluator {
+
+    /**
+     * The value of a disc at each position. Corners are good, the cells next to them are bad.
+     */
+    static final int[] CELL_VALUES = {
+            100, -20,  10,   5,   5,  10, -20, 100,
+            -20, -50,  -2,  -2,  -2,  -2, -50, -20,
+             10,  -2,  -1,  -1,  -1,  -1,  -2,  10,
+              5,  -2,  -1,  -1,  -1,  -1,  -2,   5,
+              5,  -2,  -1,  -1,  -1,  -1,  -2,   5,
+             10,  -2,  -1,  -1,  -1,  -1,  -2,  10,
+            -20, -50,  -2,  -2,  -2,  -2, -50, -20,
+            100, -20,  10,   5,   5,  10, -20, 100
+    };
+
+    /**
+     * The value of each possible move
+     */
+    private static final int MOBILITY_VALUE = 8;
+
+    /**
+     * Scores a position
+     * @param board The board
+     * @param color The color to move
+     * @return The score, from the perspective of the color to move
+     */
+    @Override
+    public int evaluate(BitBoard board, char color) {
+        long player = board.getDiscs(color);
+        long opponent = board.getDiscs(color == 'b' ? 'w' : 'b');
+        int score = 0;
+
+        for (long cells = player; cells != 0; cells &= cells - 1)
+            score += CELL_VALUES[Long.numberOfTrailingZeros(cells)];
+
+        for (long cells = opponent; cells != 0; cells &= cells - 1)
+            score -= CELL_VALUES[Long.numberOfTrailingZeros(cells)];
+
+        int mobility = Long.bitCount(BitBoard.getMoves(player, opponent)) - Long.bitCount(BitBoard.getMoves(opponent, player));
+
+        return score + MOBILITY_VALUE * mobility;
+    }
+
+    /**
+     * This evaluator doesn't keep any state
+     * @param board The board
+     */
+    @Override
+    public void reset(BitBoard board) {
+    }
+
+    /**
+     * This evaluator doesn't keep any state
+     * @param position The position of the move
+     * @param flips The flipped discs
+     * @param color The color that made the move
+     */
+    @Override
+    public void onMove(int position, long flips, char color) {
+    }
+
+    /**
+     * This evaluator doesn't keep any state
+     * @param position The position of the move
+     * @param flips The flipped discs
+     * @param color The color that made the move
+     */
+    @Override
+    public void onUndo(int position, long flips, char color) {
+    }
+}
@@ -0,0 +1,304 @@
+/*
+ * Enjun
+ *
+ * @version     1.0 Beta 1
+ * @author      Rocking Stars
+ * @copyright   2018, Enjun
+ *
+ * Copyright 2018 RockingStars
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rockingstar.modules.Reversi.ai;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-size table of search results, indexed by the Zobrist hash of a position.
+ *
+ * Every entry is stored as two longs in a single long[]: the key XOR the data, and the data itself.
+ * A reader only accepts an entry if both longs belong together, so entries that were torn by a
+ * concurrent write are treated as a miss. This makes the table safe to share between search threads
+ * without locks.
+ *
+ * Data layout (bits): 0-6 best move, 8-15 depth, 16-17 bound, 24-31 generation, 32-63 score.
+ * @author Rocking Stars
+ * @since 1.0 Beta 1
+ */
+public class TranspositionTable {
+
+    /**
+     * The bound types. The bound is never 0, so a valid entry never has data 0.
+     */
+    public static final int EXACT = 1;
+    public static final int LOWER_BOUND = 2;
+    public static final int UPPER_BOUND = 3;
+
+    /**
+     * The move that is stored when there is no best move
+     */
+    public static final int NO_MOVE = 127;
+
+    /**
+     * The data returned by probe when nothing was found
+     */
+    public static final long NOT_FOUND = 0L;
+
+    /**
+     * Decides which entry is kept when two positions map to the same slot
+     */
+    public enum ReplacementPolicy {
+
+        /**
+         * New results always replace old ones
+         */
+        ALWAYS,
+
+        /**
+         * Deeper results are kept, unless they were stored during an earlier search
+         */
+        DEPTH_PREFERRED
+    }
+
+    /**
+     * The entries, two longs each
+     */
+    private final long[] _entries;
+
+    /**
+     * Masks a hash to an entry index
+     */
+    private final int _indexMask;
+
+    /**
+     * The replacement policy
+     */
+    private final ReplacementPolicy _policy;
+
+    /**
+     * The generation of the current search, used to age out old entries
+     */
+    private volatile int _generation;
+
+    /**
+     * Statistics
+     */
+    private final LongAdder _hits = new LongAdder();
+    private final LongAdder _misses = new LongAdder();
+    private final LongAdder _collisions = new LongAdder();
+    private final LongAdder _stores = new LongAdder();
+
+    /**
+     * TranspositionTable constructor, using the depth preferred replacement policy
+     * @param megabytes The memory budget in megabytes
+     */
+    public TranspositionTable(int megabytes) {
+        this(megabytes, ReplacementPolicy.DEPTH_PREFERRED);
+    }
+
+    /**
+     * TranspositionTable constructor
+     * @param megabytes The memory budget in megabytes. The table uses the largest power of two
+     *                  number of entries that fits.
+     * @param policy The replacement policy
+     */
+    public TranspositionTable(int megabytes, ReplacementPolicy policy) {
+        long budget = Math.max(1L, megabytes) * 1024 * 1024 / 16;
+        int entries = Integer.highestOneBit((int) Math.min(budget, 1 << 29));
+
+        _entries = new long[entries * 2];
+        _indexMask = entries - 1;
+        _policy = policy;
+    }
+
+    /**
+     * Looks up a position
+     * @param key The hash of the position, including the color to move
+     * @return The data of the entry, or NOT_FOUND
+     */
+    public long probe(long key) {
+        int index = ((int) key & _indexMask) << 1;
+        long data = _entries[index + 1];
+
+        if (data == 0) {
+            _misses.increment();
+            return NOT_FOUND;
+        }
+
+        if ((_entries[index] ^ data) != key) {
+            _collisions.increment();
+            return NOT_FOUND;
+        }
+
+        _hits.increment();
+        return data;
+    }
+
+    /**
+     * Stores a search result
+     * @param key The hash of the position, including the color to move
+     * @param depth The depth of the search
+     * @param bound The bound type (EXACT, LOWER_BOUND or UPPER_BOUND)
+     * @param score The score
+     * @param move The best move, or NO_MOVE
+     */
+    public void store(long key, int depth, int bound, int score, int move) {
+        int index = ((int) key & _indexMask) << 1;
+        int generation = _generation;
+
+        if (_policy == ReplacementPolicy.DEPTH_PREFERRED) {
+            long stored = _entries[index + 1];
+
+            if (stored != 0 && getGeneration(stored) == (generation & 0xff) && getDepth(stored) > depth
+                    && (_entries[index] ^ stored) != key)
+                return;
+        }
+
+        long data = (move & 0x7fL)
+                | ((long) (depth & 0xff) << 8)
+                | ((long) bound << 16)
+                | ((long) (generation & 0xff) << 24)
+                | ((long) score << 32);
+
+        _entries[index] = key ^ data;
+        _entries[index + 1] = data;
+        _stores.increment();
+    }
+
+    /**
+     * Starts a new search, so entries of earlier searches may be replaced. Called once per move by
+     * the thread that starts the search, never by the engines of a running search.
+     */
+    public void newSearch() {
+        _generation++;
+    }
+
+    /**
+     * Returns the generation of the current search
+     * @return The generation (modulo 256), as stored in new entries
+     */
+    public int getCurrentGeneration() {
+        return _generation & 0xff;
+    }
+
+    /**
+     * Empties the table and resets the statistics
+     */
+    public void clear() {
+        Arrays.fill(_entries, 0L);
+        _hits.reset();
+        _misses.reset();
+        _collisions.reset();
+        _stores.reset();
+    }
+
+    /**
+     * Returns the best move of an entry
+     * @param data The data returned by probe
+     * @return The move, or NO_MOVE
+     */
+    public static int getMove(long data) {
+        return (int) (data & 0x7f);
+    }
+
+    /**
+     * Returns the depth of an entry
+     * @param data The data returned by probe
+     * @return The depth
+     */
+    public static int getDepth(long data) {
+        return (int) ((data >>> 8) & 0xff);
+    }
+
+    /**
+     * Returns the bound type of an entry
+     * @param data The data returned by probe
+     * @return EXACT, LOWER_BOUND or UPPER_BOUND
+     */
+    public static int getBound(long data) {
+        return (int) ((data >>> 16) & 0x3);
+    }
+
+    /**
+     * Returns the score of an entry
+     * @param data The data returned by probe
+     * @return The score
+     */
+    public static int getScore(long data) {
+        return (int) (data >> 32);
+    }
+
+    /**
+     * Returns the generation of an entry
+     * @param data The data returned by probe
+     * @return The generation (modulo 256)
+     */
+    public static int getGeneration(long data) {
+        return (int) ((data >>> 24) & 0xff);
+    }
+
+    /**
+     * Returns the number of entries
+     * @return The number of entries
+     */
+    public int getSize() {
+        return _indexMask + 1;
+    }
+
+    /**
+     * Returns the number of probes that found their position
+     * @return The number of hits
+     */
+    public long getHits() {
+        return _hits.sum();
+    }
+
+    /**
+     * Returns the number of probes that found an empty slot
+     * @return The number of misses
+     */
+    public long getMisses() {
+        return _misses.sum();
+    }
+
+    /**
+     * Returns the number of probes that found a slot holding a different position
+     * @return The number of collisions
+     */
+    public long getCollisions() {
+        return _collisions.sum();
+    }
+
+    /**
+     * Returns the number of stored results
+     * @return The number of stores
+     */
+    public long getStores() {
+        return _stores.sum();
+    }
+
+    /**
+     * Returns a short summary of the statistics
+     * @return The summary
+     */
+    @Override
+    public String toString() {
+        long hits = getHits();
+        long probes = hits + getMisses() + getCollisions();
+
+        return String.format("TT: %d entries, %d probes, %.1f%% hits, %d misses, %d collisions, %d stores",
+                getSize(), probes, probes == 0 ? 0.0 : 100.0 * hits / probes, getMisses(), getCollisions(), getStores());
+    }
+}
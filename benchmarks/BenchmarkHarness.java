@@ -0,0 +1,305 @@
+/*
+ * Enjun
+ *
+ * @version     1.0 Beta 1
+ * @author      Rocking Stars
+ * @copyright   2018, Enjun
+ *
+ * Copyright 2018 RockingStars
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rockingstar.modules.Reversi.benchmarks;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.function.LongSupplier;
+
+/**
+ * A small benchmark harness in the spirit of JMH, without the dependency. Every benchmark is an
+ * operation that is run in a loop for a number of timed iterations, after a number of warmup
+ * iterations that are not recorded. The operations return a value that is summed into a sink, so
+ * the JIT can't remove their work. Results are kept in memory and can be written as JSON, so runs of
+ * different releases can be diffed.
+ * @author Rocking Stars
+ * @since 1.0 Beta 1
+ */
+public class BenchmarkHarness {
+
+    /**
+     * The number of warmup and measured iterations
+     */
+    private int _warmupIterations;
+    private int _iterations;
+
+    /**
+     * The duration of one iteration, in ms
+     */
+    private long _iterationTime;
+
+    /**
+     * The results, in the order the benchmarks were run
+     */
+    private ArrayList<Result> _results = new ArrayList<>();
+
+    /**
+     * The sum of all values returned by the operations
+     */
+    private long _sink;
+
+    /**
+     * BenchmarkHarness constructor
+     * @param warmupIterations The number of warmup iterations of every benchmark
+     * @param iterations The number of measured iterations of every benchmark
+     * @param iterationTime The duration of one iteration, in ms
+     */
+    public BenchmarkHarness(int warmupIterations, int iterations, long iterationTime) {
+        _warmupIterations = warmupIterations;
+        _iterations = iterations;
+        _iterationTime = iterationTime;
+    }
+
+    /**
+     * Runs a benchmark and records its result
+     * @param name The name of the benchmark
+     * @param group The group of the benchmark, like the set of positions it runs on
+     * @param operation The operation. Its return value is only used to keep the work alive.
+     * @return The result
+     */
+    public Result run(String name, String group, LongSupplier operation) {
+        return run(name, group, null, operation);
+    }
+
+    /**
+     * Runs a benchmark with a setup before every operation, and records its result. Only the
+     * operation is timed.
+     * @param name The name of the benchmark
+     * @param group The group of the benchmark, like the set of positions it runs on
+     * @param setup The setup, or null
+     * @param operation The operation. Its return value is only used to keep the work alive.
+     * @return The result
+     */
+    public Result run(String name, String group, Runnable setup, LongSupplier operation) {
+        for (int i = 0; i < _warmupIterations; i++)
+            runIteration(setup, operation);
+
+        double[] scores = new double[_iterations];
+
+        for (int i = 0; i < _iterations; i++)
+            scores[i] = runIteration(setup, operation);
+
+        Result result = new Result(name, group, scores);
+        _results.add(result);
+
+        System.out.printf(Locale.ROOT, "%-28s %-10s %14.1f ns/op  (min %.1f, max %.1f)%n", name, group,
+                result.getMean(), result.getMin(), result.getMax());
+
+        return result;
+    }
+
+    /**
+     * Runs the operation until the iteration time is over
+     * @param setup The setup before every operation, or null
+     * @param operation The operation
+     * @return The average time of one operation, in ns
+     */
+    private double runIteration(Runnable setup, LongSupplier operation) {
+        long deadline = System.nanoTime() + _iterationTime * 1000000;
+        long operations = 0;
+        long start = System.nanoTime();
+        long now;
+
+        if (setup == null) {
+            do {
+                _sink += operation.getAsLong();
+                operations++;
+            } while ((now = System.nanoTime()) < deadline);
+
+            return (double) (now - start) / operations;
+        }
+
+        // Timing every operation on its own costs two clock reads, which is fine for slow operations
+        long timed = 0;
+
+        do {
+            setup.run();
+
+            long operationStart = System.nanoTime();
+            _sink += operation.getAsLong();
+            timed += System.nanoTime() - operationStart;
+            operations++;
+        } while (System.nanoTime() < deadline);
+
+        return (double) timed / operations;
+    }
+
+    /**
+     * Returns the results of all benchmarks that were run
+     * @return The results
+     */
+    public ArrayList<Result> getResults() {
+        return _results;
+    }
+
+    /**
+     * Returns the sum of all values returned by the operations
+     * @return The sum
+     */
+    public long getSink() {
+        return _sink;
+    }
+
+    /**
+     * Writes the settings and the results as a JSON document
+     * @param output The writer. It is flushed, but not closed.
+     * @throws IOException If the results can't be written
+     */
+    public void writeJson(Writer output) throws IOException {
+        StringBuilder json = new StringBuilder();
+
+        json.append("{\n");
+        json.append("  \"java\": \"").append(escape(System.getProperty("java.version"))).append("\",\n");
+        json.append("  \"processors\": ").append(Runtime.getRuntime().availableProcessors()).append(",\n");
+        json.append("  \"warmupIterations\": ").append(_warmupIterations).append(",\n");
+        json.append("  \"iterations\": ").append(_iterations).append(",\n");
+        json.append("  \"iterationTimeMs\": ").append(_iterationTime).append(",\n");
+        json.append("  \"benchmarks\": [");
+
+        for (int i = 0; i < _results.size(); i++) {
+            Result result = _results.get(i);
+
+            json.append(i == 0 ? "\n" : ",\n");
+            json.append("    {\"name\": \"").append(escape(result.getName()))
+                    .append("\", \"group\": \"").append(escape(result.getGroup()))
+                    .append("\", \"unit\": \"ns/op\"")
+                    .append(String.format(Locale.ROOT, ", \"score\": %.3f, \"min\": %.3f, \"max\": %.3f",
+                            result.getMean(), result.getMin(), result.getMax()))
+                    .append(", \"iterations\": [");
+
+            double[] scores = result.getScores();
+
+            for (int j = 0; j < scores.length; j++)
+                json.append(j == 0 ? "" : ", ").append(String.format(Locale.ROOT, "%.3f", scores[j]));
+
+            json.append("]}");
+        }
+
+        json.append("\n  ]\n}\n");
+        output.write(json.toString());
+        output.flush();
+    }
+
+    /**
+     * Escapes quotes and backslashes for a JSON string
+     * @param value The value
+     * @return The escaped value
+     */
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    /**
+     * The result of one benchmark
+     */
+    public static class Result {
+
+        /**
+         * The name and group of the benchmark
+         */
+        private String _name;
+        private String _group;
+
+        /**
+         * The average time of one operation in every measured iteration, in ns
+         */
+        private double[] _scores;
+
+        /**
+         * Result constructor
+         * @param name The name of the benchmark
+         * @param group The group of the benchmark
+         * @param scores The average time of one operation in every measured iteration, in ns
+         */
+        public Result(String name, String group, double[] scores) {
+            _name = name;
+            _group = group;
+            _scores = scores;
+        }
+
+        /**
+         * Returns the name of the benchmark
+         * @return The name of the benchmark
+         */
+        public String getName() {
+            return _name;
+        }
+
+        /**
+         * Returns the group of the benchmark
+         * @return The group of the benchmark
+         */
+        public String getGroup() {
+            return _group;
+        }
+
+        /**
+         * Returns the average time of one operation in every measured iteration, in ns
+         * @return The average time of one operation in every measured iteration
+         */
+        public double[] getScores() {
+            return _scores;
+        }
+
+        /**
+         * Returns the mean of the iterations
+         * @return The mean time of one operation, in ns
+         */
+        public double getMean() {
+            double sum = 0;
+
+            for (double score : _scores)
+                sum += score;
+
+            return _scores.length == 0 ? 0 : sum / _scores.length;
+        }
+
+        /**
+         * Returns the fastest iteration
+         * @return The time of one operation, in ns
+         */
+        public double getMin() {
+            double min = Double.MAX_VALUE;
+
+            for (double score : _scores)
+                min = Math.min(min, score);
+
+            return min;
+        }
+
+        /**
+         * Returns the slowest iteration
+         * @return The time of one operation, in ns
+         */
+        public double getMax() {
+            double max = 0;
+
+            for (double score : _scores)
+                max = Math.max(max, score);
+
+            return max;
+        }
+    }
+}
@@ -0,0 +1,361 @@
+/*
+ * Enjun
+ *
+ * @version     1.0 Beta 1
+ * @author      Rocking Stars
+ * @copyright   2018, Enjun
+ *
+ * Copyright 2018 RockingStars
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rockingstar.modules.Reversi.benchmarks;
+
+import com.rockingstar.engine.game.Player;
+import com.rockingstar.modules.Reversi.ai.PatternEvaluator;
+import com.rockingstar.modules.Reversi.ai.PatternWeights;
+import com.rockingstar.modules.Reversi.ai.SearchEngine;
+import com.rockingstar.modules.Reversi.ai.TranspositionTable;
+import com.rockingstar.modules.Reversi.models.BitBoard;
+import com.rockingstar.modules.Reversi.models.ReversiModel;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Random;
+
+/**
+ * Benchmarks the hot paths of the rules and the AI on fixed sets of opening, midgame and endgame
+ * positions: move generation, flip computation, flip application, cloning, scoring, random playouts
+ * to the end of the game and a fixed-depth search. Both the Player[][] code of ReversiModel and the
+ * BitBoard code are measured. One operation is one pass over the whole set of positions, except for
+ * the search: there one operation is one position, and the transposition table is cleared before it
+ * outside of the timed region. The cost of the clear is reported on its own.
+ *
+ * The positions are generated from a fixed seed, so every run measures the same work and the JSON
+ * output of two releases can be diffed.
+ *
+ * Usage: HotPathBenchmark [output.json] [iterationMs] [searchDepth]
+ * @author Rocking Stars
+ * @since 1.0 Beta 1
+ */
+public class HotPathBenchmark {
+
+    /**
+     * The number of positions in every set
+     */
+    private static final int POSITION_COUNT = 16;
+
+    /**
+     * The names of the position sets, and the number of random moves that create them
+     */
+    private static final String[] PHASES = {"opening", "midgame", "endgame"};
+    private static final int[] PHASE_MOVES = {6, 24, 44};
+
+    /**
+     * The memory budget of the transposition table of the search benchmark, in megabytes
+     */
+    private static final int TABLE_SIZE = 16;
+
+    /**
+     * The players of the Player[][] boards
+     */
+    private Player _black = new Player("Black", null, 'b');
+    private Player _white = new Player("White", null, 'w');
+
+    /**
+     * The positions as bitboards, as Player[][] boards, and loaded into models
+     */
+    private BitBoard[] _positions;
+    private Player[][][] _boards;
+    private ReversiModel[] _models;
+
+    /**
+     * The legal moves of black in every position
+     */
+    private long[] _moves;
+
+    /**
+     * The search of the search benchmark
+     */
+    private SearchEngine _engine;
+
+    /**
+     * The position of the next search
+     */
+    private int _searchPosition;
+
+    /**
+     * The random number generator of the playouts
+     */
+    private Random _random = new Random(1);
+
+    /**
+     * HotPathBenchmark constructor
+     * @param positions The positions, with black to move
+     * @param engine The search of the search benchmark
+     */
+    public HotPathBenchmark(BitBoard[] positions, SearchEngine engine) {
+        _positions = positions;
+        _engine = engine;
+        _boards = new Player[positions.length][][];
+        _models = new ReversiModel[positions.length];
+        _moves = new long[positions.length];
+
+        for (int i = 0; i < positions.length; i++) {
+            _models[i] = new ReversiModel();
+            _models[i].createCells();
+
+            for (int position = 0; position < 64; position++) {
+                char color = positions[i].getColor(position);
+
+                if (color != 0)
+                    _models[i].setPlayerAtPosition(color == 'b' ? _black : _white, position % 8, position / 8);
+            }
+
+            _boards[i] = _models[i].cloneBoard(_models[i].getBoard());
+            _moves[i] = positions[i].getMoves('b');
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        long iterationTime = args.length > 1 ? Long.parseLong(args[1]) : 500;
+        int searchDepth = args.length > 2 ? Integer.parseInt(args[2]) : 6;
+
+        BenchmarkHarness harness = new BenchmarkHarness(3, 5, iterationTime);
+        PatternWeights weights = PatternWeights.loadDefault();
+
+        for (int phase = 0; phase < PHASES.length; phase++) {
+            SearchEngine engine = new SearchEngine(new PatternEvaluator(weights), new TranspositionTable(TABLE_SIZE));
+            HotPathBenchmark benchmark = new HotPathBenchmark(
+                    ParallelScalingReport.createPositions(POSITION_COUNT, PHASE_MOVES[phase]), engine);
+
+            benchmark.runAll(harness, PHASES[phase], searchDepth);
+        }
+
+        try (Writer output = args.length > 0 ? new FileWriter(args[0]) : new OutputStreamWriter(System.out)) {
+            harness.writeJson(output);
+        }
+    }
+
+    /**
+     * Runs all benchmarks on the positions
+     * @param harness The harness
+     * @param group The name of the position set
+     * @param searchDepth The depth of the search benchmark
+     */
+    public void runAll(BenchmarkHarness harness, String group, int searchDepth) {
+        harness.run("model.getPossibleMoves", group, this::modelPossibleMoves);
+        harness.run("model.getFlippableTiles", group, this::modelFlippableTiles);
+        harness.run("model.flipTiles", group, this::modelFlipTiles);
+        harness.run("model.cloneBoard", group, this::modelCloneBoard);
+        harness.run("model.getScore", group, this::modelScore);
+        harness.run("bitboard.getMoves", group, this::bitBoardMoves);
+        harness.run("bitboard.getFlips", group, this::bitBoardFlips);
+        harness.run("bitboard.makeUnmake", group, this::bitBoardMakeUnmake);
+        harness.run("playout.random", group, this::randomPlayouts);
+        harness.run("table.clear", group, this::clearTable);
+        harness.run("search.depth" + searchDepth, group, this::nextSearchPosition, () -> search(searchDepth));
+    }
+
+    /**
+     * Generates the legal moves with the Player[][] code
+     * @return The number of moves
+     */
+    private long modelPossibleMoves() {
+        long count = 0;
+
+        for (int i = 0; i < _boards.length; i++)
+            count += _models[i].getPossibleMoves(_black, _boards[i]).size();
+
+        return count;
+    }
+
+    /**
+     * Computes the flipped discs of every legal move with the Player[][] code
+     * @return The number of flipped discs
+     */
+    private long modelFlippableTiles() {
+        long count = 0;
+
+        for (int i = 0; i < _boards.length; i++)
+            for (long moves = _moves[i]; moves != 0; moves &= moves - 1) {
+                int position = Long.numberOfTrailingZeros(moves);
+                count += _models[i].getFlippableTiles(position % 8, position / 8, _black, _boards[i]).size();
+            }
+
+        return count;
+    }
+
+    /**
+     * Plays every legal move on a copy of the Player[][] board, the way search code had to do it
+     * @return The number of played moves
+     */
+    private long modelFlipTiles() {
+        long count = 0;
+
+        for (int i = 0; i < _boards.length; i++)
+            for (long moves = _moves[i]; moves != 0; moves &= moves - 1) {
+                int position = Long.numberOfTrailingZeros(moves);
+                Player[][] child = _models[i].cloneBoard(_boards[i]);
+
+                _models[i].flipTiles(_models[i].getFlippableTiles(position % 8, position / 8, _black, child), _black, child);
+                child[position % 8][position / 8] = _black;
+                count++;
+            }
+
+        return count;
+    }
+
+    /**
+     * Copies every Player[][] board
+     * @return The number of copied boards
+     */
+    private long modelCloneBoard() {
+        long count = 0;
+
+        for (int i = 0; i < _boards.length; i++)
+            if (_models[i].cloneBoard(_boards[i]) != null)
+                count++;
+
+        return count;
+    }
+
+    /**
+     * Counts the discs of every model
+     * @return The sum of the scores
+     */
+    private long modelScore() {
+        long count = 0;
+
+        for (ReversiModel model : _models) {
+            int[] score = model.getScore();
+            count += score[0] + score[1];
+        }
+
+        return count;
+    }
+
+    /**
+     * Generates the legal moves with the bitboard code
+     * @return The number of moves
+     */
+    private long bitBoardMoves() {
+        long count = 0;
+
+        for (BitBoard position : _positions)
+            count += Long.bitCount(position.getMoves('b'));
+
+        return count;
+    }
+
+    /**
+     * Computes the flipped discs of every legal move with the bitboard code
+     * @return The number of flipped discs
+     */
+    private long bitBoardFlips() {
+        long count = 0;
+
+        for (int i = 0; i < _positions.length; i++)
+            for (long moves = _moves[i]; moves != 0; moves &= moves - 1)
+                count += Long.bitCount(_positions[i].getFlips(Long.numberOfTrailingZeros(moves), 'b'));
+
+        return count;
+    }
+
+    /**
+     * Plays and takes back every legal move on the bitboards
+     * @return The number of flipped discs
+     */
+    private long bitBoardMakeUnmake() {
+        long count = 0;
+
+        for (int i = 0; i < _positions.length; i++)
+            for (long moves = _moves[i]; moves != 0; moves &= moves - 1) {
+                int position = Long.numberOfTrailingZeros(moves);
+                long undo = _positions[i].makeMove(position, 'b');
+
+                _positions[i].unmakeMove(position, undo, 'b');
+                count += Long.bitCount(undo);
+            }
+
+        return count;
+    }
+
+    /**
+     * Plays one random game from every position to the end
+     * @return The number of played moves
+     */
+    private long randomPlayouts() {
+        long count = 0;
+
+        for (BitBoard position : _positions) {
+            BitBoard board = position.copy();
+            char color = 'b';
+            boolean passed = false;
+
+            while (true) {
+                long moves = board.getMoves(color);
+
+                if (moves == 0) {
+                    if (passed)
+                        break;
+
+                    passed = true;
+                }
+                else {
+                    int index = _random.nextInt(Long.bitCount(moves));
+
+                    for (int j = 0; j < index; j++)
+                        moves &= moves - 1;
+
+                    board.makeMove(Long.numberOfTrailingZeros(moves), color);
+                    passed = false;
+                    count++;
+                }
+
+                color = color == 'b' ? 'w' : 'b';
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Clears the transposition table of the search benchmark, which the search benchmark does untimed
+     * @return Nothing useful
+     */
+    private long clearTable() {
+        _engine.getTable().clear();
+        return 0;
+    }
+
+    /**
+     * Moves the search benchmark to the next position and clears the transposition table
+     */
+    private void nextSearchPosition() {
+        _searchPosition = (_searchPosition + 1) % _positions.length;
+        _engine.getTable().clear();
+    }
+
+    /**
+     * Searches the current position to a fixed depth. The transposition table was cleared in the setup.
+     * @param depth The depth
+     * @return The best move
+     */
+    private long search(int depth) {
+        return _engine.findMove(_positions[_searchPosition], 'b', Long.MAX_VALUE / 2, depth);
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Enjun
+ *
+ * @version     1.0 Beta 1
+ * @author      Rocking Stars
+ * @copyright   2018, Enjun
+ *
+ * Copyright 2018 RockingStars
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rockingstar.modules.Reversi.benchmarks;
+
+import com.rockingstar.engine.game.Player;
+import com.rockingstar.modules.Reversi.models.BitBoard;
+import com.rockingstar.modules.Reversi.models.ReversiModel;
+
+/**
+ * Compares walking the game tree with a copy of the board per node (cloneBoard and flipTiles on the
+ * copy, the way search code had to do it) against makeMove/unmakeMove on a single BitBoard.
+ * Both walks visit every node up to the given depth from the starting position.
+ *
+ * Usage: MakeMoveBenchmark [minDepth] [maxDepth]
+ * @author Rocking Stars
+ * @since 1.0 Beta 1
+ */
+public class MakeMoveBenchmark {
+
+    /**
+     * The model, used for its array based helpers
+     */
+    private ReversiModel _model;
+
+    /**
+     * The players
+     */
+    private Player _black;
+    private Player _white;
+
+    /**
+     * MakeMoveBenchmark constructor
+     */
+    public MakeMoveBenchmark() {
+        _model = new ReversiModel();
+        _black = new Player("Black", null, 'b');
+        _white = new Player("White", null, 'w');
+    }
+
+    public static void main(String[] args) {
+        int minDepth = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+        int maxDepth = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        MakeMoveBenchmark benchmark = new MakeMoveBenchmark();
+
+        System.out.println("depth        nodes   clone (ms)    make/unmake (ms)   speedup");
+
+        for (int depth = minDepth; depth <= maxDepth; depth++) {
+            long start = System.nanoTime();
+            long cloneNodes = benchmark.walkWithClones(benchmark.startingBoard(), benchmark._black, benchmark._white, depth, false);
+            long cloneTime = System.nanoTime() - start;
+
+            BitBoard board = new BitBoard();
+            board.setStartingPositions();
+
+            start = System.nanoTime();
+            long nodes = walkWithUndo(board, 'b', depth, false);
+            long undoTime = System.nanoTime() - start;
+
+            if (nodes != cloneNodes)
+                System.out.printf("Node counts differ at depth %d: %d vs %d%n", depth, cloneNodes, nodes);
+
+            System.out.printf("%5d %12d %12.1f %19.1f %9.1fx%n", depth, nodes, cloneTime / 1e6, undoTime / 1e6,
+                    (double) cloneTime / Math.max(1, undoTime));
+        }
+    }
+
+    /**
+     * Creates the starting position as a Player[][] board
+     * @return The board
+     */
+    private Player[][] startingBoard() {
+        Player[][] board = new Player[8][8];
+
+        board[3][3] = _white;
+        board[3][4] = _black;
+        board[4][3] = _black;
+        board[4][4] = _white;
+
+        return board;
+    }
+
+    /**
+     * Walks the tree by copying the board for every child
+     * @param board The board
+     * @param player The player to move
+     * @param opponent The opponent
+     * @param depth The remaining depth
+     * @param passed Whether or not the previous move was a pass
+     * @return The number of visited nodes
+     */
+    private long walkWithClones(Player[][] board, Player player, Player opponent, int depth, boolean passed) {
+        if (depth == 0)
+            return 1;
+
+        long nodes = 1;
+        boolean moved = false;
+
+        for (int position : _model.getPossibleMoves(player, board)) {
+            int x = position % 8;
+            int y = position / 8;
+            Player[][] child = _model.cloneBoard(board);
+
+            _model.flipTiles(_model.getFlippableTiles(x, y, player, child), player, child);
+            child[x][y] = player;
+
+            nodes += walkWithClones(child, opponent, player, depth - 1, false);
+            moved = true;
+        }
+
+        if (!moved && !passed)
+            nodes += walkWithClones(board, opponent, player, depth - 1, true);
+
+        return nodes;
+    }
+
+    /**
+     * Walks the tree with makeMove and unmakeMove on a single board
+     * @param board The board
+     * @param color The color to move
+     * @param depth The remaining depth
+     * @param passed Whether or not the previous move was a pass
+     * @return The number of visited nodes
+     */
+    private static long walkWithUndo(BitBoard board, char color, int depth, boolean passed) {
+        if (depth == 0)
+            return 1;
+
+        char opponent = color == 'b' ? 'w' : 'b';
+        long moves = board.getMoves(color);
+        long nodes = 1;
+
+        if (moves == 0)
+            return passed ? nodes : nodes + walkWithUndo(board, opponent, depth - 1, true);
+
+        for (; moves != 0; moves &= moves - 1) {
+            int position = Long.numberOfTrailingZeros(moves);
+            long undo = board.makeMove(position, color);
+
+            nodes += walkWithUndo(board, opponent, depth - 1, false);
+            board.unmakeMove(position, undo, color);
+        }
+
+        return nodes;
+    }
+}
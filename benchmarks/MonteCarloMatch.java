@@ -0,0 +1,134 @@
+/*
+ * Enjun
+ *
+ * @version     1.0 Beta 1
+ * @author      Rocking Stars
+ * @copyright   2018, Enjun
+ *
+ * Copyright 2018 RockingStars
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rockingstar.modules.Reversi.benchmarks;
+
+import com.rockingstar.modules.Reversi.ai.MonteCarloTreeSearch;
+import com.rockingstar.modules.Reversi.ai.ParallelSearch;
+import com.rockingstar.modules.Reversi.ai.PatternEvaluator;
+import com.rockingstar.modules.Reversi.ai.PatternWeights;
+import com.rockingstar.modules.Reversi.ai.SearchEngine;
+import com.rockingstar.modules.Reversi.ai.TranspositionTable;
+import com.rockingstar.modules.Reversi.models.BitBoard;
+
+import java.util.Random;
+
+/**
+ * Plays Monte Carlo Tree Search against the alpha-beta search with the same time per move and the
+ * same number of threads. The first moves of every game are random, and the colors alternate.
+ * The tree of the MCTS player is kept between the moves of a game, like in a real game.
+ *
+ * Usage: MonteCarloMatch [games] [moveTime] [threads]
+ * @author Rocking Stars
+ * @since 1.0 Beta 1
+ */
+public class MonteCarloMatch {
+
+    /**
+     * The number of random moves at the start of every game
+     */
+    private static final int RANDOM_OPENING_MOVES = 4;
+
+    /**
+     * The memory budget of the transposition table, in megabytes
+     */
+    private static final int TABLE_SIZE = 64;
+
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        long moveTime = args.length > 1 ? Long.parseLong(args[1]) : 100;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        PatternWeights weights = PatternWeights.loadDefault();
+        ParallelSearch alphaBeta = new ParallelSearch(() -> new PatternEvaluator(weights), new TranspositionTable(TABLE_SIZE), threads);
+        MonteCarloTreeSearch monteCarlo = new MonteCarloTreeSearch(threads);
+        Random random = new Random(20180401L);
+
+        int wins = 0;
+        int draws = 0;
+        long iterations = 0;
+        long reused = 0;
+        long mctsMoves = 0;
+
+        System.out.printf("%d games, %d ms per move, %d threads%n", games, moveTime, threads);
+
+        for (int game = 0; game < games; game++) {
+            char mctsColor = game % 2 == 0 ? 'b' : 'w';
+            BitBoard board = new BitBoard();
+            board.setStartingPositions();
+            char color = 'b';
+            int ply = 0;
+
+            alphaBeta.getTable().clear();
+
+            while (true) {
+                long moves = board.getMoves(color);
+
+                if (moves == 0) {
+                    color = color == 'b' ? 'w' : 'b';
+
+                    if (board.getMoves(color) == 0)
+                        break;
+
+                    continue;
+                }
+
+                int position;
+
+                if (ply < RANDOM_OPENING_MOVES)
+                    position = BitBoard.toList(moves).get(random.nextInt(Long.bitCount(moves)));
+                else if (color == mctsColor) {
+                    position = monteCarlo.findMove(board, color, moveTime);
+                    iterations += monteCarlo.getLastIterations();
+                    reused += monteCarlo.getLastReusedVisits();
+                    mctsMoves++;
+                }
+                else
+                    position = alphaBeta.findMove(board, color, moveTime);
+
+                if (position == SearchEngine.PASS || (moves & 1L << position) == 0)
+                    throw new IllegalStateException("Illegal move " + position + " by " + color);
+
+                board.makeMove(position, color);
+                monteCarlo.advance(position);
+                color = color == 'b' ? 'w' : 'b';
+                ply++;
+            }
+
+            int differential = board.getCount(mctsColor) - board.getCount(mctsColor == 'b' ? 'w' : 'b');
+
+            if (differential > 0)
+                wins++;
+            else if (differential == 0)
+                draws++;
+
+            System.out.printf("Game %d: MCTS as %c, %d-%d%n", game + 1, mctsColor, board.getCount(mctsColor),
+                    board.getCount(mctsColor == 'b' ? 'w' : 'b'));
+        }
+
+        System.out.printf("MCTS: %d wins, %d draws, %d losses; %d iterations per move, %d reused%n", wins, draws,
+                games - wins - draws, iterations / Math.max(1, mctsMoves), reused / Math.max(1, mctsMoves));
+
+        alphaBeta.shutdown();
+        monteCarlo.shutdown();
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Enjun
+ *
+ * @version     1.0 Beta 1
+ * @author      Rocking Stars
+ * @copyright   2018, Enjun
+ *
+ * Copyright 2018 RockingStars
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rockingstar.modules.Reversi.benchmarks;
+
+import com.rockingstar.modules.Reversi.ai.ParallelSearch;
+import com.rockingstar.modules.Reversi.ai.SimpleEvaluator;
+import com.rockingstar.modules.Reversi.ai.TranspositionTable;
+import com.rockingstar.modules.Reversi.models.BitBoard;
+
+import java.util.Random;
+
+/**
+ * Measures how the parallel search scales with the number of threads. For every thread count, a
+ * fixed set of midgame positions is searched to a fixed depth, with a fresh transposition table.
+ * The report shows the nodes per second and the time it took to reach the depth.
+ *
+ * Usage: ParallelScalingReport [depth] [positions] [threads...]
+ * @author Rocking Stars
+ * @since 1.0 Beta 1
+ */
+public class ParallelScalingReport {
+
+    /**
+     * The thread counts that are measured when none are given
+     */
+    private static final int[] DEFAULT_THREADS = {1, 2, 4, 8, 16};
+
+    /**
+     * The memory budget of the transposition table, in megabytes
+     */
+    private static final int TABLE_SIZE = 256;
+
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 12;
+        int positionCount = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int[] threadCounts = DEFAULT_THREADS;
+
+        if (args.length > 2) {
+            threadCounts = new int[args.length - 2];
+
+            for (int i = 2; i < args.length; i++)
+                threadCounts[i - 2] = Integer.parseInt(args[i]);
+        }
+
+        BitBoard[] positions = createPositions(positionCount, 20);
+
+        System.out.printf("Depth %d, %d positions, %d available processors%n", depth, positionCount,
+                Runtime.getRuntime().availableProcessors());
+        System.out.println("threads        nodes   time (ms)    nodes/sec   speedup");
+
+        // Warm up, so the first thread count isn't measured with cold code
+        ParallelSearch warmup = new ParallelSearch(SimpleEvaluator::new, new TranspositionTable(TABLE_SIZE), 1);
+
+        for (BitBoard position : positions)
+            warmup.findMove(position, 'b', Long.MAX_VALUE / 2, Math.min(depth, 8));
+
+        double baseTime = 0;
+
+        for (int threads : threadCounts) {
+            ParallelSearch search = new ParallelSearch(SimpleEvaluator::new, new TranspositionTable(TABLE_SIZE), threads);
+            long nodes = 0;
+            long start = System.nanoTime();
+
+            for (BitBoard position : positions) {
+                search.getTable().clear();
+                search.findMove(position, 'b', Long.MAX_VALUE / 2, depth);
+                nodes += search.getNodes();
+            }
+
+            double time = (System.nanoTime() - start) / 1e6;
+
+            if (baseTime == 0)
+                baseTime = time;
+
+            System.out.printf("%7d %12d %11.1f %12.0f %8.2fx%n", threads, nodes, time, nodes / (time / 1000),
+                    baseTime / time);
+
+            search.shutdown();
+        }
+    }
+
+    /**
+     * Creates positions by playing random moves from the starting position, with black to move
+     * @param count The number of positions
+     * @param moves The number of random moves
+     * @return The positions
+     */
+    static BitBoard[] createPositions(int count, int moves) {
+        Random random = new Random(20180401L);
+        BitBoard[] positions = new BitBoard[count];
+
+        for (int i = 0; i < count; i++) {
+            BitBoard board;
+            char color;
+
+            do {
+                board = new BitBoard();
+                board.setStartingPositions();
+                color = 'b';
+
+                for (int move = 0; move < moves; move++) {
+                    long possible = board.getMoves(color);
+
+                    if (possible == 0)
+                        break;
+
+                    int index = random.nextInt(Long.bitCount(possible));
+
+                    for (int j = 0; j < index; j++)
+                        possible &= possible - 1;
+
+                    board.makeMove(Long.numberOfTrailingZeros(possible), color);
+                    color = color == 'b' ? 'w' : 'b';
+                }
+            } while (color != 'b' || board.getMoves('b') == 0);
+
+            positions[i] = board;
+        }
+
+        return positions;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Enjun
+ *
+ * @version     1.0 Beta 1
+ * @author      Rocking Stars
+ * @copyright   2018, Enjun
+ *
+ * Copyright 2018 RockingStars
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rockingstar.modules.Reversi.benchmarks;
+
+import com.rockingstar.modules.Reversi.ai.PlayoutEngine;
+import com.rockingstar.modules.Reversi.models.BitBoard;
+
+/**
+ * Measures the random playout throughput for every thread count, and prints the win rate of every
+ * candidate move of the starting position and of a midgame position.
+ *
+ * Usage: PlayoutReport [playoutsPerMove] [threads...]
+ * @author Rocking Stars
+ * @since 1.0 Beta 1
+ */
+public class PlayoutReport {
+
+    /**
+     * The thread counts that are measured when none are given
+     */
+    private static final int[] DEFAULT_THREADS = {1, 2, 4, 8};
+
+    public static void main(String[] args) {
+        int playoutsPerMove = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int[] threadCounts = DEFAULT_THREADS;
+
+        if (args.length > 1) {
+            threadCounts = new int[args.length - 1];
+
+            for (int i = 1; i < args.length; i++)
+                threadCounts[i - 1] = Integer.parseInt(args[i]);
+        }
+
+        BitBoard start = new BitBoard();
+        start.setStartingPositions();
+        BitBoard midgame = ParallelScalingReport.createPositions(1, 20)[0];
+
+        System.out.printf("%d playouts per move, %d available processors%n", playoutsPerMove,
+                Runtime.getRuntime().availableProcessors());
+        System.out.println("threads     playouts   time (ms)  playouts/sec   speedup");
+
+        // Warm up, so the first thread count isn't measured with cold code
+        PlayoutEngine warmup = new PlayoutEngine(1);
+        warmup.evaluate(midgame, 'b', Math.min(playoutsPerMove, 20000));
+
+        PlayoutEngine.Statistics last = null;
+        double baseRate = 0;
+
+        for (int threads : threadCounts) {
+            PlayoutEngine engine = new PlayoutEngine(threads);
+            PlayoutEngine.Statistics statistics = engine.evaluate(midgame, 'b', playoutsPerMove);
+
+            if (baseRate == 0)
+                baseRate = statistics.getPlayoutsPerSecond();
+
+            System.out.printf("%7d %12d %11.1f %13.0f %8.2fx%n", threads, statistics.getTotalPlayouts(),
+                    statistics.getTime() / 1e6, statistics.getPlayoutsPerSecond(),
+                    statistics.getPlayoutsPerSecond() / baseRate);
+
+            if (threads == threadCounts[threadCounts.length - 1])
+                last = engine.evaluate(start, 'b', playoutsPerMove);
+
+            engine.shutdown();
+        }
+
+        System.out.println();
+        System.out.print("Starting position, black to move: " + last);
+        System.out.println();
+        System.out.print("Midgame position, black to move: " + warmup.evaluate(midgame, 'b', playoutsPerMove));
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Enjun
+ *
+ * @version     1.0 Beta 1
+ * @author      Rocking Stars
+ * @copyright   2018, Enjun
+ *
+ * Copyright 2018 RockingStars
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rockingstar.modules.Reversi.benchmarks;
+
+import com.rockingstar.engine.game.Player;
+import com.rockingstar.modules.Reversi.models.BoardListener;
+import com.rockingstar.modules.Reversi.models.ReversiModel;
+
+import java.util.Random;
+
+/**
+ * Counts the view work of a session of games without JavaFX. The model is driven like the controller
+ * drives it (possible moves shown for the local player, moves placed and flipped, a flush after each
+ * game event), and a listener counts what each version of ReversiView does with the events:
+ * - per event: every cell change decodes a new Image and adds a new ImageView to the grid, which is
+ *   only emptied when a game starts, and posts its own runnable
+ * - batched: a cell change only marks the cell dirty, every flush posts one runnable that swaps the
+ *   image of each dirty cell in a fixed grid of 64 ImageViews, and the four images are loaded once.
+ *   The first flush of a game redraws the whole grid, like generateBoardVisual.
+ *
+ * Frame times aren't measured, they need the view with -Dreversi.renderStats=true.
+ *
+ * Usage: ViewUpdateReport [games] [seed]
+ * @author Rocking Stars
+ * @since 1.0 Beta 1
+ */
+public class ViewUpdateReport implements BoardListener {
+
+    /**
+     * The number of cells, and so of ImageViews in a freshly generated grid
+     */
+    private static final int CELLS = 64;
+
+    /**
+     * The number of tile images the batched view loads once
+     */
+    private static final int TILE_IMAGES = 4;
+
+    /**
+     * Cells marked dirty since the last flush
+     */
+    private long _dirtyCells;
+
+    /**
+     * Counts of the current game
+     */
+    private int _events;
+    private int _flushes;
+    private int _cellUpdates;
+
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+
+        ViewUpdateReport report = new ViewUpdateReport();
+        ReversiModel model = new ReversiModel();
+        model.addListener(report);
+
+        Player local = new Player("Local", null, 'b');
+        Player remote = new Player("Remote", null, 'w');
+        Random random = new Random(seed);
+
+        long totalEvents = 0;
+        long totalFlushes = 0;
+        long totalUpdates = 0;
+        int maxGrid = 0;
+
+        System.out.println(" game   events  per event: grid nodes  images   batched: runnables  cell updates");
+
+        for (int game = 1; game <= games; game++) {
+            report.play(model, local, remote, random);
+
+            int grid = CELLS + report._events;
+            maxGrid = Math.max(maxGrid, grid);
+            totalEvents += report._events;
+            totalFlushes += report._flushes;
+            totalUpdates += report._cellUpdates;
+
+            if (game == 1 || game == games || game % 25 == 0)
+                System.out.printf("%5d %8d %22d %7d %20d %13d%n", game, report._events, grid, grid,
+                        report._flushes, report._cellUpdates);
+        }
+
+        System.out.println();
+        System.out.printf("%d games, per game on average: %.1f cell events, %.1f flushes, %.1f cell updates%n",
+                games, (double) totalEvents / games, (double) totalFlushes / games, (double) totalUpdates / games);
+        System.out.printf("Per event view: up to %d grid nodes at the end of a game, %d images decoded and %d runnables in total%n",
+                maxGrid, games * CELLS + totalEvents, games * CELLS + totalEvents);
+        System.out.printf("Batched view: %d grid nodes in every game, %d images decoded in total, %d runnables%n",
+                CELLS, TILE_IMAGES, totalFlushes);
+    }
+
+    /**
+     * Plays a game of random moves the way the controller plays it, with a flush after every event
+     * @param model The model
+     * @param local The local player, whose possible moves are shown
+     * @param remote The remote player
+     * @param random Random number generator
+     */
+    private void play(ReversiModel model, Player local, Player remote, Random random) {
+        model.createCells();
+        model.setStartingPositions(local, remote);
+
+        _dirtyCells = -1L;
+        _events = 0;
+        _flushes = 0;
+        _cellUpdates = 0;
+        flush();
+
+        Player player = local;
+        Player opponent = remote;
+        boolean passed = false;
+
+        while (true) {
+            long moves = player == local ? model.showPossibleMoves(player) : model.getPossibleMovesMask(player);
+
+            if (player == local)
+                flush();
+
+            if (moves == 0) {
+                if (passed)
+                    break;
+
+                passed = true;
+            }
+            else {
+                passed = false;
+                int position = pick(moves, random);
+
+                model.clearPossibleMoves();
+                model.flipTiles(model.getFlipMask(position % 8, position / 8, player), player);
+                model.setPlayerAtPosition(player, position % 8, position / 8);
+                flush();
+            }
+
+            Player next = opponent;
+            opponent = player;
+            player = next;
+        }
+
+        model.clearPossibleMoves();
+        flush();
+    }
+
+    /**
+     * Counts one flush of the batched view, if any cell is dirty
+     */
+    private void flush() {
+        if (_dirtyCells == 0)
+            return;
+
+        _flushes++;
+        _cellUpdates += Long.bitCount(_dirtyCells);
+        _dirtyCells = 0;
+    }
+
+    /**
+     * Picks a random cell from a mask
+     * @param cells A non-empty mask
+     * @param random Random number generator
+     * @return The position of the picked cell
+     */
+    private static int pick(long cells, Random random) {
+        int index = random.nextInt(Long.bitCount(cells));
+
+        for (int i = 0; i < index; i++)
+            cells &= cells - 1;
+
+        return Long.numberOfTrailingZeros(cells);
+    }
+
+    @Override
+    public void cellChanged(int x, int y) {
+        _events++;
+        _dirtyCells |= 1L << (y * 8 + x);
+    }
+}
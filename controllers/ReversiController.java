@@ -30,6 +30,19 @@ import com.rockingstar.engine.game.*;
 import com.rockingstar.engine.game.models.VectorXY;
 import com.rockingstar.engine.gui.controllers.AudioPlayer;
 import com.rockingstar.engine.io.models.Util;
+import com.rockingstar.modules.Reversi.ai.AIExecutor;
+import com.rockingstar.modules.Reversi.ai.EndgameSolver;
+import com.rockingstar.modules.Reversi.ai.MonteCarloAI;
+import com.rockingstar.modules.Reversi.ai.MonteCarloTreeSearch;
+import com.rockingstar.modules.Reversi.ai.OpeningBook;
+import com.rockingstar.modules.Reversi.ai.ParallelSearch;
+import com.rockingstar.modules.Reversi.ai.PatternEvaluator;
+import com.rockingstar.modules.Reversi.ai.PatternWeights;
+import com.rockingstar.modules.Reversi.ai.Ponderer;
+import com.rockingstar.modules.Reversi.ai.SearchEngine;
+import com.rockingstar.modules.Reversi.ai.TranspositionTable;
+import com.rockingstar.modules.Reversi.models.BitBoard;
+import com.rockingstar.modules.Reversi.models.GameRecord;
 import com.rockingstar.modules.Reversi.models.ReversiModel;
 import com.rockingstar.modules.Reversi.views.ReversiView;
 
@@ -38,7 +51,7 @@ import javafx.scene.Node;
 import javafx.scene.control.Alert;
 import javafx.scene.control.ButtonType;
 
-import java.util.ArrayList;
+import java.io.IOException;
 import java.util.Optional;
 
 /**
@@ -48,6 +61,32 @@ import java.util.Optional;
  */
 public class ReversiController extends AbstractGame {
 
+    /**
+     * The time the AI may spend on a move, in milliseconds. This stays well below the move clock of
+     * the tournament server.
+     */
+    private static final long DEFAULT_MOVE_TIME = 5000;
+
+    /**
+     * The memory budget of the transposition table, in megabytes
+     */
+    private static final int TABLE_SIZE = 128;
+
+    /**
+     * A ponder search runs for at most this many times the time of a move
+     */
+    private static final int MAX_PONDER_MOVES = 4;
+
+    /**
+     * The time an AI move may take beyond its move time before it is stopped, in milliseconds
+     */
+    private static final long DEADLINE_MARGIN = 500;
+
+    /**
+     * The file every finished game is appended to
+     */
+    private static final String RECORD_PATH = "reversi_games.rvg";
+
     /**
      * The model contains basic reversi algorithms, used for determining if we have a winner
      */
@@ -63,6 +102,52 @@ public class ReversiController extends AbstractGame {
      */
     private AudioPlayer _backgroundMusic;
 
+    /**
+     * The search, used as the brain of HardAI. It runs on all available processors.
+     */
+    private ParallelSearch _search;
+
+    /**
+     * Solves the last moves of the game exactly, used by HardAI instead of the search
+     */
+    private EndgameSolver _endgameSolver;
+
+    /**
+     * The opening book, consulted by HardAI before the search
+     */
+    private OpeningBook _book;
+
+    /**
+     * Searches on the opponent's time, used by HardAI
+     */
+    private Ponderer _ponderer;
+
+    /**
+     * The tree search of MonteCarloAI, which follows the played moves to reuse its tree
+     */
+    private MonteCarloTreeSearch _monteCarlo;
+
+    /**
+     * The record of the game, saved when it ends
+     */
+    private GameRecord _record = new GameRecord();
+
+    /**
+     * Guards the model, the record, the ponderer and the tree search, which are changed by the thread
+     * that plays our moves and the thread that receives the opponent's moves
+     */
+    private final Object _gameLock = new Object();
+
+    /**
+     * Computes the moves of an AI player off the thread that delivers server messages
+     */
+    private AIExecutor _aiExecutor;
+
+    /**
+     * The time the AI may spend on a move, in milliseconds
+     */
+    private long _moveTime = DEFAULT_MOVE_TIME;
+
     /**
      * ReversiController constructor.
      * @param player1 The local player
@@ -72,7 +157,8 @@ public class ReversiController extends AbstractGame {
         super(player1, player2);
 
         _view = new ReversiView(this);
-        _model = new ReversiModel(_view);
+        _model = new ReversiModel();
+        _model.addListener(_view);
 
         _model.createCells();
 
@@ -87,9 +173,23 @@ public class ReversiController extends AbstractGame {
             ((HardAI) player1).setCounter(0);
             ((HardAI) player1).setModel(_model);
             ((HardAI) player1).setController(this);
+            PatternWeights weights = PatternWeights.loadDefault();
+            _search = new ParallelSearch(() -> new PatternEvaluator(weights), new TranspositionTable(TABLE_SIZE),
+                    Runtime.getRuntime().availableProcessors());
+            _endgameSolver = new EndgameSolver();
+            _book = OpeningBook.loadDefault();
+            _ponderer = new Ponderer(_search);
+        }
+        else if (player1 instanceof MonteCarloAI) {
+            ((MonteCarloAI) player1).setModel(_model);
+            ((MonteCarloAI) player1).setMoveTime(_moveTime);
+            _monteCarlo = ((MonteCarloAI) player1).getSearch();
         }
         else if (player1 instanceof EasyAI)
             ((EasyAI) player1).setModel(_model);
+
+        if (player1 instanceof AI)
+            _aiExecutor = new AIExecutor(Runnable::run, this::stopAI, Util::displayStatus);
     }
 
     /**
@@ -108,21 +208,43 @@ public class ReversiController extends AbstractGame {
      */
     @Override
     public void doPlayerMove(int x, int y) {
+        synchronized (_gameLock) {
+            playLocalMove(x, y);
+        }
+
+        _view.flushCells();
+    }
+
+    /**
+     * Plays a move of the local player. Everything that follows from the move is done before it is
+     * sent, because the opponent's reply can arrive on the other thread right after sending.
+     * @param x The x position
+     * @param y The y position
+     */
+    private void playLocalMove(int x, int y) {
         _model.clearPossibleMoves();
         if (!(getGameState() == State.GAME_FINISHED)) {
             if (yourTurn) {
-                Util.displayStatus("Amount of flippable tiles: " + _model.getFlippableTiles(x,y,player1));
-                if (_model.isValidMove(x, y, player1)) {
-                    _model.flipTiles(_model.getFlippableTiles(x,y,player1), player1);
+                long flips = _model.getFlipMask(x, y, player1);
+                Util.displayStatus("Amount of flippable tiles: " + Long.bitCount(flips));
+                if (flips != 0) {
+                    _model.flipTiles(flips, player1);
                     _model.setPlayerAtPosition(player1, x, y);
-                    _view.setCellImage(x, y);
-                    CommandExecutor.execute(new MoveCommand(ServerConnection.getInstance(), y * 8 + x));
+                    _record.addMove(y * 8 + x, player1.getCharacter());
+
+                    if (_ponderer != null)
+                        _ponderer.start(_model.getState(), player1.getCharacter(), y * 8 + x, _moveTime * MAX_PONDER_MOVES);
+
+                    if (_monteCarlo != null)
+                        _monteCarlo.advance(y * 8 + x);
+
                     _view.setStatus("Opponent's turn");
+                    CommandExecutor.execute(new MoveCommand(ServerConnection.getInstance(), y * 8 + x));
                 }
                 else {
                     System.out.println("Not a valid move");
                     _view.setErrorStatus("Invalid move");
-                    _model.getPossibleMoves(player1);
+                    _model.showPossibleMoves(player1);
                 }
             }
             else {
@@ -137,28 +259,36 @@ public class ReversiController extends AbstractGame {
      */
     @Override
     public void doPlayerMove(int position) {
-        Platform.runLater(() -> getScores());
-        if (!(getGameState() == State.GAME_FINISHED)) {
-            if (yourTurn) {
-                Platform.runLater(() -> getScores());
-                yourTurn = false;
-                //_view.stopTimer();
-                //_view.newTimerThread();
-                return;
-            } else {
-                //_view.stopTimer();
-
-                int x = position % 8;
-                int y = position / 8;
-
-                _model.clearPossibleMoves();
-                _model.flipTiles(_model.getFlippableTiles(x, y, player2), player2);
-                _model.setPlayerAtPosition(player2, x, y);
-                _view.setCellImage(x, y);
-
-                //_view.newTimerThread();
+        synchronized (_gameLock) {
+            if (!(getGameState() == State.GAME_FINISHED)) {
+                if (yourTurn) {
+                    yourTurn = false;
+                    //_view.stopTimer();
+                    //_view.newTimerThread();
+                    return;
+                } else {
+                    //_view.stopTimer();
+
+                    int x = position % 8;
+                    int y = position / 8;
+
+                    if (_ponderer != null)
+                        _ponderer.opponentMoved(position);
+
+                    if (_monteCarlo != null)
+                        _monteCarlo.advance(position);
+
+                    _model.clearPossibleMoves();
+                    _model.flipTiles(_model.getFlipMask(x, y, player2), player2);
+                    _model.setPlayerAtPosition(player2, x, y);
+                    _record.addMove(position, player2.getCharacter());
+
+                    //_view.newTimerThread();
+                }
             }
         }
+
+        _view.flushCells();
     }
 
     /**
@@ -167,26 +297,122 @@ public class ReversiController extends AbstractGame {
      */
     @Override
     public void doYourTurn () {
-        yourTurn = true;
-        ArrayList<Integer> possibleMoves = _model.getPossibleMoves(player1);
+        long possibleMoves;
+        BitBoard state;
+
+        synchronized (_gameLock) {
+            yourTurn = true;
+            possibleMoves = _model.showPossibleMoves(player1);
+            _view.flushCells();
+
+            if (possibleMoves == 0) {
+                if (getGameState() != State.GAME_FINISHED) {
+                    yourTurn = false;
+                    Util.displayStatus("No possible moves left, switching turns");
+                    return;
+                }
+            }
+
+            _view.setStatus("It is your turn");
 
-        if (possibleMoves.size() == 0) {
-            if (getGameState() != State.GAME_FINISHED) {
-                yourTurn = false;
-                Util.displayStatus("No possible moves left, switching turns");
+            if (!(player1 instanceof AI))
                 return;
-            }
+
+            _model.clearPossibleMoves();
+            state = _model.getState().copy();
         }
 
-        _view.setStatus("It is your turn");
+        // The move is computed and played on the AI thread; only the view updates go to the FX thread
+        _aiExecutor.submit(() -> getAIMove(state, possibleMoves), Long.numberOfTrailingZeros(possibleMoves),
+                _moveTime + DEADLINE_MARGIN, position -> {
+            Util.displayStatus("AI MOVE: " + position % 8 + ", " + position / 8);
+            doPlayerMove(position % 8, position / 8);
+        });
+    }
 
-        if (player1 instanceof AI) {
-            _model.clearPossibleMoves();
-            VectorXY coordinates = ((AI) player1).getMove(player1, possibleMoves);
+    /**
+     * Stops the search or the endgame solver of HardAI, or the tree search of MonteCarloAI, so it returns
+     * its best move so far
+     */
+    private void stopAI() {
+        if (_search != null) {
+            _search.stop();
+            _endgameSolver.stop();
+        }
+
+        if (_monteCarlo != null)
+            _monteCarlo.stop();
+    }
+
+    /**
+     * Asks the local AI for a move. HardAI uses the search engine and MonteCarloAI its tree search, both on
+     * the copy of the board, other AIs decide for themselves.
+     * @param state A copy of the board
+     * @param possibleMoves A mask containing the possible moves
+     * @return The position of the move
+     */
+    private int getAIMove(BitBoard state, long possibleMoves) {
+        if (_search != null) {
+            long start = System.currentTimeMillis();
+
+            // Stops the ponder search first, so it doesn't compete with the solver or the search
+            int ponderMove = _ponderer.finish(state, player1.getCharacter());
 
-            Util.displayStatus("AI MOVE: " + coordinates.x + ", " + coordinates.y);
-            doPlayerMove(coordinates.x, coordinates.y);
+            long bookEntry = _book.find(state, player1.getCharacter());
+            int bookMove = bookEntry == OpeningBook.NOT_FOUND ? OpeningBook.NO_MOVE : _book.getMove(bookEntry);
+
+            // A hash collision could give a move of another position, so it has to be legal here
+            if (bookMove != OpeningBook.NO_MOVE && (possibleMoves & 1L << bookMove) != 0) {
+                Util.displayStatus("Book move, played in " + _book.getGames(bookEntry) + " games, average result: "
+                        + _book.getScore(bookEntry) / 100.0);
+                return bookMove;
+            }
+
+            // The solver gets half of the time, so the search can still take over if it can't finish
+            if (_endgameSolver.canSolve(state)) {
+                int position = _endgameSolver.solve(state, player1.getCharacter(), _moveTime / 2);
+
+                if (position != EndgameSolver.UNSOLVED) {
+                    Util.displayStatus("Endgame solved in " + _endgameSolver.getLastSolveTime()
+                            + " ms, final disc differential: " + _endgameSolver.getLastScore());
+                    return position;
+                }
+            }
+
+            // A ponder hit only replaces the heuristic search, never the book or the solver
+            if (ponderMove != SearchEngine.PASS && (possibleMoves & 1L << ponderMove) != 0) {
+                long ponderTime = _ponderer.getLastPonderTime();
+                Util.displayStatus("Ponder hit after " + ponderTime + " ms, depth " + _ponderer.getLastCompletedDepth());
+
+                // The ponder search already used a full move of time, otherwise it continues from the table
+                if (ponderTime >= _moveTime) {
+                    _ponderer.addSavedTime(_moveTime);
+                    return ponderMove;
+                }
+
+                _ponderer.addSavedTime(ponderTime);
+
+                return _search.findMove(state, player1.getCharacter(),
+                        _moveTime - ponderTime - (System.currentTimeMillis() - start));
+            }
+
+            int position = _search.findMove(state, player1.getCharacter(), _moveTime - (System.currentTimeMillis() - start));
+            Util.displayStatus(_search.getTable().toString());
+
+            return position;
         }
+
+        if (player1 instanceof MonteCarloAI) {
+            int position = ((MonteCarloAI) player1).getMove(state, player1.getCharacter());
+            Util.displayStatus(_monteCarlo.toString());
+
+            // The search returns PASS when it finds no moves, which can't happen while possibleMoves isn't empty
+            return (possibleMoves & 1L << position) != 0 ? position : Long.numberOfTrailingZeros(possibleMoves);
+        }
+
+        VectorXY coordinates = ((AI) player1).getMove(player1, BitBoard.toList(possibleMoves));
+
+        return coordinates.y * 8 + coordinates.x;
     }
 
     /**
@@ -195,9 +421,27 @@ public class ReversiController extends AbstractGame {
      */
     @Override
     public void gameEnded(String result){
-        Platform.runLater(() -> getScores());
+        _view.flushCells();
         super.gameEnded(result);
         _view.setIsFinished(true);
+        _view.reportRenderStats();
+
+        if (_aiExecutor != null) {
+            _aiExecutor.shutdown();
+            Util.displayStatus(_aiExecutor.toString());
+        }
+
+        if (_ponderer != null) {
+            _ponderer.stop();
+            Util.displayStatus(_ponderer.toString());
+        }
+
+        if (_search != null)
+            _search.shutdown();
+
+        synchronized (_gameLock) {
+            saveRecord(result);
+        }
 
         switch (result) {
             case "WIN":
@@ -227,6 +471,24 @@ public class ReversiController extends AbstractGame {
         });
     }
 
+    /**
+     * Appends the record of the finished game to the record file
+     * @param result The result of the game (WIN, LOSS or DRAW)
+     */
+    private void saveRecord(String result) {
+        char winner = result.equals("WIN") ? player1.getCharacter() : result.equals("LOSS") ? player2.getCharacter() : 'd';
+        int[] scores = _model.getScore();
+
+        _record.setResult(winner, scores[0], scores[1]);
+
+        try (GameRecord.Writer writer = new GameRecord.Writer(RECORD_PATH)) {
+            writer.write(_record);
+        }
+        catch (IOException e) {
+            Util.displayStatus("Could not save the game record: " + e.getMessage());
+        }
+    }
+
     /**
      * Sets the starting player
      * @param player The starting player
@@ -241,10 +503,29 @@ public class ReversiController extends AbstractGame {
             Util.displayStatus("Player 1 is black");
         }
 
-        _model.setStartingPositions(player1, player2);
+        Player black = player1.getCharacter() == 'b' ? player1 : player2;
+        Player white = black == player1 ? player2 : player1;
+
+        synchronized (_gameLock) {
+            _model.setStartingPositions(player1, player2);
+            _record.start(black.getUsername(), white.getUsername(), System.currentTimeMillis());
+        }
+
+        _view.flushCells();
         _view.updatePlayerColors();
     }
 
+    /**
+     * Sets the time the AI may spend on a move
+     * @param moveTime The time in milliseconds
+     */
+    public void setMoveTime(long moveTime) {
+        _moveTime = moveTime;
+
+        if (player1 instanceof MonteCarloAI)
+            ((MonteCarloAI) player1).setMoveTime(moveTime);
+    }
+
     /**
      * Adds event handlers to the view
      */
@@ -264,15 +545,6 @@ public class ReversiController extends AbstractGame {
         _view.getRageQuitButton().setOnAction(e -> System.exit(0));
     }
 
-    /**
-     * Retrieves the scores of both players and adds them to the view
-     */
-    private void getScores() {
-        int[] scores = _model.getScore();
-        _view.getP1Score().setText("" + scores[player1.getCharacter() == 'b' ? 0 : 1]);
-        _view.getP2Score().setText("" + scores[player2.getCharacter() == 'b' ? 0 : 1]);
-    }
-
     /**
      * Sets up the background music
      */
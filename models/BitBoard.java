@@ -0,0 +1,421 @@
+/*
+ * Enjun
+ *
+ * @version     1.0 Beta 1
+ * @author      Rocking Stars
+ * @copyright   2018, Enjun
+ *
+ * Copyright 2018 RockingStars
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rockingstar.modules.Reversi.models;
+
+import java.util.ArrayList;
+
+/**
+ * This class contains the state of a Reversi board, stored as two 64-bit masks (one for each color).
+ * Bit n of a mask represents the cell at position n = y * 8 + x, which is the same numbering that
+ * is used for the moves sent to and received from the server.
+ * @author Rocking Stars
+ * @since 1.0 Beta 1
+ */
+public class BitBoard {
+
+    /**
+     * All cells, except for the ones in the first column (x = 0)
+     */
+    public static final long NOT_FIRST_COLUMN = 0xfefefefefefefefeL;
+
+    /**
+     * All cells, except for the ones in the last column (x = 7)
+     */
+    public static final long NOT_LAST_COLUMN = 0x7f7f7f7f7f7f7f7fL;
+
+    /**
+     * The cells occupied by black at the start of a game
+     */
+    public static final long START_BLACK = (1L << 28) | (1L << 35);
+
+    /**
+     * The cells occupied by white at the start of a game
+     */
+    public static final long START_WHITE = (1L << 27) | (1L << 36);
+
+    /**
+     * Bit shifts for each of the eight directions, in the same order as ReversiModel's directions
+     */
+    private static final int[] SHIFTS = {8, 9, 1, -7, -8, -9, -1, 7};
+
+    /**
+     * Masks that prevent a shift from wrapping around to the other side of the board
+     */
+    private static final long[] WRAP_MASKS = {
+            -1L, NOT_FIRST_COLUMN, NOT_FIRST_COLUMN, NOT_FIRST_COLUMN,
+            -1L, NOT_LAST_COLUMN, NOT_LAST_COLUMN, NOT_LAST_COLUMN
+    };
+
+    /**
+     * The cells occupied by black
+     */
+    private long _black;
+
+    /**
+     * The cells occupied by white
+     */
+    private long _white;
+
+    /**
+     * The Zobrist hash of the position, kept up to date on every change
+     */
+    private long _hash;
+
+    /**
+     * BitBoard constructor, creates an empty board
+     */
+    public BitBoard() {
+        this(0L, 0L);
+    }
+
+    /**
+     * BitBoard constructor
+     * @param black The cells occupied by black
+     * @param white The cells occupied by white
+     */
+    public BitBoard(long black, long white) {
+        _black = black;
+        _white = white;
+        _hash = Zobrist.hash(black, white);
+    }
+
+    /**
+     * Occupies the four center cells, like at the start of a game
+     */
+    public void setStartingPositions() {
+        _black = START_BLACK;
+        _white = START_WHITE;
+        _hash = Zobrist.hash(START_BLACK, START_WHITE);
+    }
+
+    /**
+     * Sets the value of all cells to empty
+     */
+    public void clear() {
+        _black = 0L;
+        _white = 0L;
+        _hash = 0L;
+    }
+
+    /**
+     * Returns the cells occupied by black
+     * @return The cells occupied by black
+     */
+    public long getBlack() {
+        return _black;
+    }
+
+    /**
+     * Returns the cells occupied by white
+     * @return The cells occupied by white
+     */
+    public long getWhite() {
+        return _white;
+    }
+
+    /**
+     * Returns the cells occupied by a certain color
+     * @param color The color ('b' or 'w')
+     * @return The cells occupied by the color
+     */
+    public long getDiscs(char color) {
+        return color == 'b' ? _black : _white;
+    }
+
+    /**
+     * Returns the Zobrist hash of the position. The color to move isn't part of it, see Zobrist.
+     * @return The hash
+     */
+    public long getHash() {
+        return _hash;
+    }
+
+    /**
+     * Returns the cells that are not occupied
+     * @return The empty cells
+     */
+    public long getEmpty() {
+        return ~(_black | _white);
+    }
+
+    /**
+     * Returns the color of the disc at a certain position
+     * @param position The position
+     * @return 'b' or 'w', or 0 if the cell is empty
+     */
+    public char getColor(int position) {
+        long bit = 1L << position;
+
+        if ((_black & bit) != 0)
+            return 'b';
+        else if ((_white & bit) != 0)
+            return 'w';
+
+        return 0;
+    }
+
+    /**
+     * Places a disc of a certain color, without flipping anything
+     * @param position The position
+     * @param color 'b' or 'w'. Any other value empties the cell.
+     */
+    public void setColor(int position, char color) {
+        long bit = 1L << position;
+
+        if ((_black & bit) != 0)
+            _hash ^= Zobrist.BLACK[position];
+        else if ((_white & bit) != 0)
+            _hash ^= Zobrist.WHITE[position];
+
+        _black &= ~bit;
+        _white &= ~bit;
+
+        if (color == 'b') {
+            _black |= bit;
+            _hash ^= Zobrist.BLACK[position];
+        }
+        else if (color == 'w') {
+            _white |= bit;
+            _hash ^= Zobrist.WHITE[position];
+        }
+    }
+
+    /**
+     * Returns the possible moves for a certain color
+     * @param color The color to move
+     * @return A mask containing all possible moves
+     */
+    public long getMoves(char color) {
+        return color == 'b' ? getMoves(_black, _white) : getMoves(_white, _black);
+    }
+
+    /**
+     * Returns the discs that would be flipped by a move
+     * @param position The position of the move
+     * @param color The color making the move
+     * @return A mask containing the discs to flip, which is empty if the move is invalid
+     */
+    public long getFlips(int position, char color) {
+        if (((_black | _white) & (1L << position)) != 0)
+            return 0L;
+
+        return color == 'b' ? getFlips(position, _black, _white) : getFlips(position, _white, _black);
+    }
+
+    /**
+     * Checks whether a move would flip at least one disc, without computing all flips
+     * @param position The position of the move
+     * @param color The color making the move
+     * @return Whether or not the move is valid
+     */
+    public boolean hasAnyFlip(int position, char color) {
+        if (((_black | _white) & (1L << position)) != 0)
+            return false;
+
+        return color == 'b' ? hasAnyFlip(position, _black, _white) : hasAnyFlip(position, _white, _black);
+    }
+
+    /**
+     * Places a disc and flips the given discs. The flips are expected to be computed with getFlips.
+     * @param position The position of the move
+     * @param flips The discs to flip
+     * @param color The color making the move
+     */
+    public void applyMove(int position, long flips, char color) {
+        long placed = (1L << position) | flips;
+
+        if (color == 'b') {
+            _black |= placed;
+            _white &= ~flips;
+            _hash ^= Zobrist.BLACK[position];
+        }
+        else {
+            _white |= placed;
+            _black &= ~flips;
+            _hash ^= Zobrist.WHITE[position];
+        }
+
+        _hash ^= Zobrist.flips(flips);
+    }
+
+    /**
+     * Plays a move in place. The returned undo record holds the flipped discs; together with the
+     * position and the color it is all unmakeMove needs to restore the board, so search code can walk
+     * a tree on a single instance without copying it.
+     * @param position The position of the move
+     * @param color The color making the move
+     * @return The undo record, which is 0 (and leaves the board untouched) if the move is invalid
+     */
+    public long makeMove(int position, char color) {
+        long flips = getFlips(position, color);
+
+        if (flips != 0)
+            applyMove(position, flips, color);
+
+        return flips;
+    }
+
+    /**
+     * Takes back a valid move that was played with makeMove
+     * @param position The position of the move
+     * @param undo The undo record returned by makeMove
+     * @param color The color that made the move
+     */
+    public void unmakeMove(int position, long undo, char color) {
+        long placed = 1L << position;
+
+        if (color == 'b') {
+            _black &= ~(placed | undo);
+            _white |= undo;
+            _hash ^= Zobrist.BLACK[position];
+        }
+        else {
+            _white &= ~(placed | undo);
+            _black |= undo;
+            _hash ^= Zobrist.WHITE[position];
+        }
+
+        _hash ^= Zobrist.flips(undo);
+    }
+
+    /**
+     * Returns the number of discs of a certain color
+     * @param color The color
+     * @return The number of discs
+     */
+    public int getCount(char color) {
+        return Long.bitCount(getDiscs(color));
+    }
+
+    /**
+     * Clones the board by value
+     * @return A copy of this board
+     */
+    public BitBoard copy() {
+        return new BitBoard(_black, _white);
+    }
+
+    /**
+     * Converts a mask to a list of positions, for code that works with lists of moves
+     * @param cells The mask
+     * @return A list containing the positions of all cells in the mask
+     */
+    public static ArrayList<Integer> toList(long cells) {
+        ArrayList<Integer> positions = new ArrayList<>(Long.bitCount(cells));
+
+        while (cells != 0) {
+            positions.add(Long.numberOfTrailingZeros(cells));
+            cells &= cells - 1;
+        }
+
+        return positions;
+    }
+
+    /**
+     * Shifts all cells one step in a certain direction. Cells that leave the board are dropped.
+     * @param cells The cells to shift
+     * @param direction The index of the direction
+     * @return The shifted cells
+     */
+    private static long shift(long cells, int direction) {
+        int shift = SHIFTS[direction];
+        return (shift > 0 ? cells << shift : cells >>> -shift) & WRAP_MASKS[direction];
+    }
+
+    /**
+     * Returns the possible moves for a player, using shift-and-mask move generation
+     * @param player The cells of the player to move
+     * @param opponent The cells of the opponent
+     * @return A mask containing all possible moves
+     */
+    public static long getMoves(long player, long opponent) {
+        long empty = ~(player | opponent);
+        long moves = 0L;
+
+        for (int direction = 0; direction < 8; direction++) {
+            long candidates = shift(player, direction) & opponent;
+
+            // A line of opponent discs is at most six cells long
+            for (int i = 0; i < 5; i++)
+                candidates |= shift(candidates, direction) & opponent;
+
+            moves |= shift(candidates, direction) & empty;
+        }
+
+        return moves;
+    }
+
+    /**
+     * Returns the discs that would be flipped by placing a disc at an empty position
+     * @param position The position of the move
+     * @param player The cells of the player making the move
+     * @param opponent The cells of the opponent
+     * @return A mask containing the discs to flip
+     */
+    public static long getFlips(int position, long player, long opponent) {
+        long move = 1L << position;
+        long flips = 0L;
+
+        for (int direction = 0; direction < 8; direction++) {
+            long line = 0L;
+            long cell = shift(move, direction);
+
+            while ((cell & opponent) != 0) {
+                line |= cell;
+                cell = shift(cell, direction);
+            }
+
+            if ((cell & player) != 0)
+                flips |= line;
+        }
+
+        return flips;
+    }
+
+    /**
+     * Checks whether placing a disc at an empty position would flip at least one disc
+     * @param position The position of the move
+     * @param player The cells of the player making the move
+     * @param opponent The cells of the opponent
+     * @return Whether or not the move is valid
+     */
+    public static boolean hasAnyFlip(int position, long player, long opponent) {
+        long move = 1L << position;
+
+        for (int direction = 0; direction < 8; direction++) {
+            long cell = shift(move, direction);
+
+            if ((cell & opponent) == 0)
+                continue;
+
+            do {
+                cell = shift(cell, direction);
+            } while ((cell & opponent) != 0);
+
+            if ((cell & player) != 0)
+                return true;
+        }
+
+        return false;
+    }
+}
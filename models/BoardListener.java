@@ -0,0 +1,47 @@
+/*
+ * Enjun
+ *
+ * @version     1.0 Beta 1
+ * @author      Rocking Stars
+ * @copyright   2018, Enjun
+ *
+ * Copyright 2018 RockingStars
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rockingstar.modules.Reversi.models;
+
+/**
+ * Receives changes of the board of a ReversiModel, so the model doesn't need to know about the view
+ * @author Rocking Stars
+ * @since 1.0 Beta 1
+ */
+public interface BoardListener {
+
+    /**
+     * Called when the contents of a cell changed (a disc was placed or flipped, or a possible move
+     * was shown or cleared)
+     * @param x The x position
+     * @param y The y position
+     */
+    void cellChanged(int x, int y);
+
+    /**
+     * Called when the number of discs of a color changed
+     * @param black The number of black discs
+     * @param white The number of white discs
+     */
+    default void scoreChanged(int black, int white) {
+    }
+}
@@ -0,0 +1,442 @@
+/*
+ * Enjun
+ *
+ * @version     1.0 Beta 1
+ * @author      Rocking Stars
+ * @copyright   2018, Enjun
+ *
+ * Copyright 2018 RockingStars
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rockingstar.modules.Reversi.models;
+
+import com.rockingstar.engine.game.Player;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * The record of one game: the players, the result and the moves. Records are stored in a compact
+ * binary format. A file starts with a magic number and a version, followed by the games. A game is
+ * the start time (8 bytes), the names of the black and the white player (modified UTF-8, as written
+ * by DataOutputStream), the winner (1 byte: 0 for a draw, 1 for black, 2 for white), the final disc
+ * counts of black and white (1 byte each), the number of moves (1 byte) and one byte per move: the
+ * position 0-63, or PASS when the player to move couldn't move.
+ *
+ * The winner is stored apart from the disc counts, because a game can also end by a forfeit or a
+ * timeout.
+ * @author Rocking Stars
+ * @since 1.0 Beta 1
+ */
+public class GameRecord {
+
+    /**
+     * The magic number at the start of a file ("RVGR")
+     */
+    private static final int MAGIC = 0x52564752;
+
+    /**
+     * The version of the format
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The move code of a pass
+     */
+    public static final int PASS = 64;
+
+    /**
+     * The maximum number of moves of a game: 60 discs and the passes between them
+     */
+    public static final int MAX_MOVES = 128;
+
+    /**
+     * The players
+     */
+    private String _blackPlayer = "";
+    private String _whitePlayer = "";
+
+    /**
+     * The time the game started, in milliseconds since the epoch
+     */
+    private long _startTime;
+
+    /**
+     * The winner ('b', 'w', or 'd' for a draw) and the final disc counts
+     */
+    private char _winner = 'd';
+    private int _blackCount;
+    private int _whiteCount;
+
+    /**
+     * The moves
+     */
+    private byte[] _moves = new byte[MAX_MOVES];
+    private int _moveCount;
+
+    /**
+     * The color that has to make the next move
+     */
+    private char _nextColor = 'b';
+
+    /**
+     * Starts a new game
+     * @param blackPlayer The name of the black player
+     * @param whitePlayer The name of the white player
+     * @param startTime The time the game started, in milliseconds since the epoch
+     */
+    public void start(String blackPlayer, String whitePlayer, long startTime) {
+        _blackPlayer = blackPlayer;
+        _whitePlayer = whitePlayer;
+        _startTime = startTime;
+        _winner = 'd';
+        _blackCount = 0;
+        _whiteCount = 0;
+        _moveCount = 0;
+        _nextColor = 'b';
+    }
+
+    /**
+     * Adds a move. When the color isn't the one that was expected, the other color couldn't move,
+     * and a pass is added first.
+     * @param position The position of the move
+     * @param color The color that made the move
+     */
+    public void addMove(int position, char color) {
+        if (color != _nextColor)
+            append(PASS);
+
+        append(position);
+        _nextColor = color == 'b' ? 'w' : 'b';
+    }
+
+    /**
+     * Adds a move code, unless the game is full
+     * @param move The move code
+     */
+    private void append(int move) {
+        if (_moveCount < MAX_MOVES)
+            _moves[_moveCount++] = (byte) move;
+    }
+
+    /**
+     * Sets the result of the game
+     * @param winner The winner ('b', 'w', or 'd' for a draw)
+     * @param blackCount The final number of black discs
+     * @param whiteCount The final number of white discs
+     */
+    public void setResult(char winner, int blackCount, int whiteCount) {
+        _winner = winner;
+        _blackCount = blackCount;
+        _whiteCount = whiteCount;
+    }
+
+    /**
+     * Plays the moves on a board, from the starting position
+     * @param board The board
+     * @return Whether or not all moves were legal. The board holds the position before the first illegal move.
+     */
+    public boolean replay(BitBoard board) {
+        board.setStartingPositions();
+        char color = 'b';
+
+        for (int i = 0; i < _moveCount; i++) {
+            color = apply(board, _moves[i], color);
+
+            if (color == 0)
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Plays the moves on an empty model, the way the controller does
+     * @param model The model, without discs
+     * @param black The black player
+     * @param white The white player
+     * @return Whether or not all moves were legal. The model holds the position before the first illegal move.
+     */
+    public boolean replay(ReversiModel model, Player black, Player white) {
+        model.setStartingPositions(black, white);
+        Player player = black;
+
+        for (int i = 0; i < _moveCount; i++) {
+            int move = _moves[i];
+
+            if (move != PASS) {
+                long flips = model.getFlipMask(move % 8, move / 8, player);
+
+                if (flips == 0)
+                    return false;
+
+                model.flipTiles(flips, player);
+                model.setPlayerAtPosition(player, move % 8, move / 8);
+            }
+
+            player = player == black ? white : black;
+        }
+
+        return true;
+    }
+
+    /**
+     * Plays a move code on a board
+     * @param board The board
+     * @param move The move code
+     * @param color The color to move
+     * @return The color to move next, or 0 if the move is illegal
+     */
+    public static char apply(BitBoard board, int move, char color) {
+        long moves = board.getMoves(color);
+
+        if (move == PASS ? moves != 0 : move < 0 || move > PASS || (moves & 1L << move) == 0)
+            return 0;
+
+        if (move != PASS)
+            board.makeMove(move, color);
+
+        return color == 'b' ? 'w' : 'b';
+    }
+
+    /**
+     * Returns the name of the black player
+     * @return The name
+     */
+    public String getBlackPlayer() {
+        return _blackPlayer;
+    }
+
+    /**
+     * Returns the name of the white player
+     * @return The name
+     */
+    public String getWhitePlayer() {
+        return _whitePlayer;
+    }
+
+    /**
+     * Returns the time the game started
+     * @return The time in milliseconds since the epoch
+     */
+    public long getStartTime() {
+        return _startTime;
+    }
+
+    /**
+     * Returns the winner
+     * @return 'b', 'w', or 'd' for a draw
+     */
+    public char getWinner() {
+        return _winner;
+    }
+
+    /**
+     * Returns the final number of discs of a color
+     * @param color The color
+     * @return The number of discs
+     */
+    public int getCount(char color) {
+        return color == 'b' ? _blackCount : _whiteCount;
+    }
+
+    /**
+     * Returns the number of moves, including passes
+     * @return The number of moves
+     */
+    public int getMoveCount() {
+        return _moveCount;
+    }
+
+    /**
+     * Returns a move
+     * @param index The index of the move
+     * @return The position of the move, or PASS
+     */
+    public int getMove(int index) {
+        return _moves[index];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+
+        for (int i = 0; i < _moveCount; i++) {
+            if (_moves[i] == PASS)
+                builder.append("--");
+            else
+                builder.append((char) ('a' + _moves[i] % 8)).append(_moves[i] / 8 + 1);
+        }
+
+        return String.format("%s vs %s, %d-%d (%c): %s", _blackPlayer, _whitePlayer, _blackCount, _whiteCount,
+                _winner, builder);
+    }
+
+    /**
+     * Appends games to a file
+     */
+    public static class Writer implements Closeable {
+
+        /**
+         * The file
+         */
+        private DataOutputStream _output;
+
+        /**
+         * The number of written games
+         */
+        private long _games;
+
+        /**
+         * Writer constructor. A new file gets a header, an existing file is appended to.
+         * @param path The path of the file
+         * @throws IOException If the file can't be opened
+         */
+        public Writer(String path) throws IOException {
+            boolean exists = new File(path).length() > 0;
+
+            _output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path, true), 1 << 16));
+
+            if (!exists) {
+                _output.writeInt(MAGIC);
+                _output.writeInt(VERSION);
+            }
+        }
+
+        /**
+         * Writes a game
+         * @param record The game
+         * @throws IOException If the game can't be written
+         */
+        public void write(GameRecord record) throws IOException {
+            _output.writeLong(record._startTime);
+            _output.writeUTF(record._blackPlayer);
+            _output.writeUTF(record._whitePlayer);
+            _output.writeByte(record._winner == 'b' ? 1 : record._winner == 'w' ? 2 : 0);
+            _output.writeByte(record._blackCount);
+            _output.writeByte(record._whiteCount);
+            _output.writeByte(record._moveCount);
+            _output.write(record._moves, 0, record._moveCount);
+            _games++;
+        }
+
+        /**
+         * Returns the number of written games
+         * @return The number of games
+         */
+        public long getGames() {
+            return _games;
+        }
+
+        /**
+         * Closes the file
+         * @throws IOException If the file can't be closed
+         */
+        @Override
+        public void close() throws IOException {
+            _output.close();
+        }
+    }
+
+    /**
+     * Reads the games of a file one by one into a single record, so files of any size take
+     * constant memory
+     */
+    public static class Reader implements Closeable {
+
+        /**
+         * The file
+         */
+        private DataInputStream _input;
+
+        /**
+         * The current game
+         */
+        private GameRecord _record = new GameRecord();
+
+        /**
+         * Reader constructor
+         * @param path The path of the file
+         * @throws IOException If the file can't be opened or isn't a game record file
+         */
+        public Reader(String path) throws IOException {
+            _input = new DataInputStream(new BufferedInputStream(new FileInputStream(path), 1 << 16));
+
+            if (_input.readInt() != MAGIC || _input.readInt() != VERSION) {
+                _input.close();
+                throw new IOException(path + " is not a game record file");
+            }
+        }
+
+        /**
+         * Reads the next game
+         * @return Whether or not a game was read, false at the end of the file
+         * @throws IOException If the file can't be read, or ends in the middle of a game
+         */
+        public boolean next() throws IOException {
+            long startTime;
+
+            try {
+                startTime = _input.readLong();
+            }
+            catch (EOFException e) {
+                return false;
+            }
+
+            GameRecord record = _record;
+            record._startTime = startTime;
+            record._blackPlayer = _input.readUTF();
+            record._whitePlayer = _input.readUTF();
+
+            int winner = _input.readByte();
+            record._winner = winner == 1 ? 'b' : winner == 2 ? 'w' : 'd';
+            record._blackCount = _input.readUnsignedByte();
+            record._whiteCount = _input.readUnsignedByte();
+            record._moveCount = _input.readUnsignedByte();
+
+            if (record._moveCount > MAX_MOVES)
+                throw new IOException("Game with " + record._moveCount + " moves");
+
+            _input.readFully(record._moves, 0, record._moveCount);
+
+            return true;
+        }
+
+        /**
+         * Returns the current game. The record is overwritten by the next game.
+         * @return The game
+         */
+        public GameRecord getRecord() {
+            return _record;
+        }
+
+        /**
+         * Closes the file
+         * @throws IOException If the file can't be closed
+         */
+        @Override
+        public void close() throws IOException {
+            _input.close();
+        }
+    }
+}
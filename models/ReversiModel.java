@@ -23,7 +23,6 @@
 package com.rockingstar.modules.Reversi.models;
 
 import com.rockingstar.engine.game.Player;
-import com.rockingstar.modules.Reversi.views.ReversiView;
 
 import java.util.ArrayList;
 import java.util.LinkedList;
@@ -42,9 +41,9 @@ public class ReversiModel {
     private Player _ghost;
 
     /**
-     * The view
+     * The listeners that are notified of changed cells, like the view
      */
-    private ReversiView _view;
+    private ArrayList<BoardListener> _listeners = new ArrayList<>();
 
     /**
      * ??
@@ -52,10 +51,35 @@ public class ReversiModel {
     private int counter1;
 
     /**
-     * The board, containing 64 cells
+     * The board, containing 64 cells. This is derived from the state and only used for rendering.
      */
     private Player[][] _board = new Player[8][8];
 
+    /**
+     * The state of the game, which is the source of truth for all rules
+     */
+    private BitBoard _state = new BitBoard();
+
+    /**
+     * The version of the state, which changes whenever a disc is placed, flipped or removed
+     */
+    private long _version;
+
+    /**
+     * The legal moves of black (0) and white (1), and the version of the state they belong to. They
+     * are computed at most once per version, however often they are asked for during a turn.
+     */
+    private long[] _moves = new long[2];
+    private long[] _movesVersion = {-1, -1};
+
+    /**
+     * The flips of the last move that was asked for, and the version of the state they belong to
+     */
+    private int _flipsPosition = -1;
+    private char _flipsColor;
+    private long _flips;
+    private long _flipsVersion = -1;
+
     /**
      * Possible directions in which tiles can be moved
      */
@@ -65,11 +89,9 @@ public class ReversiModel {
     };
 
     /**
-     * ReversiModel constructor
-     * @param view An instance of ReversiView
+     * ReversiModel constructor. The model doesn't depend on a view, so it can run without JavaFX.
      */
-    public ReversiModel(ReversiView view) {
-        _view = view;
+    public ReversiModel() {
         _ghost = new Player("PossibleMoves", null, 'p');
     }
 
@@ -83,15 +105,51 @@ public class ReversiModel {
         Player white = player1.getCharacter() == 'w' ? player1 : player2;
 
 
-        setPlayerAtPosition(white, 3, 3);
-        setPlayerAtPosition(black, 3, 4);
-        setPlayerAtPosition(black, 4, 3);
-        setPlayerAtPosition(white, 4, 4);
+        setColor(white, 3, 3);
+        setColor(black, 3, 4);
+        setColor(black, 4, 3);
+        setColor(white, 4, 4);
 
         for (int y = 3; y < 5; y++)
             for (int x = 3; x < 5; x++)
-                _view.setCellImage(x, y);
+                fireCellChanged(x, y);
+
+        fireScoreChanged();
+
+    }
 
+    /**
+     * Adds a listener that is notified of changed cells
+     * @param listener The listener
+     */
+    public void addListener(BoardListener listener) {
+        _listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener
+     * @param listener The listener
+     */
+    public void removeListener(BoardListener listener) {
+        _listeners.remove(listener);
+    }
+
+    /**
+     * Notifies all listeners of a changed cell
+     * @param x The x position
+     * @param y The y position
+     */
+    private void fireCellChanged(int x, int y) {
+        for (int i = 0; i < _listeners.size(); i++)
+            _listeners.get(i).cellChanged(x, y);
+    }
+
+    /**
+     * Notifies all listeners of a changed score
+     */
+    private void fireScoreChanged() {
+        for (int i = 0; i < _listeners.size(); i++)
+            _listeners.get(i).scoreChanged(_state.getCount('b'), _state.getCount('w'));
     }
 
     /**
@@ -103,14 +161,37 @@ public class ReversiModel {
     }
 
     /**
-     * Flips all tiles in the parameters
+     * Returns the state of the game
+     * @return The state of the game
+     */
+    public BitBoard getState() {
+        return _state;
+    }
+
+    /**
+     * Flips all tiles in the parameters. The score listeners are notified by the placement of the move.
      * @param tilesToFlip A list of tiles to flip
      * @param player The player that should get all of these tiles
      */
     public void flipTiles(LinkedList<Integer> tilesToFlip, Player player) {
         for (Integer tile : tilesToFlip) {
-            setPlayerAtPosition(player, tile % 8, tile / 8);
-            _view.setCellImage(tile % 8, tile / 8);
+            setColor(player, tile % 8, tile / 8);
+            fireCellChanged(tile % 8, tile / 8);
+        }
+    }
+
+    /**
+     * Flips all tiles in a mask. The score listeners are notified by the placement of the move.
+     * @param tilesToFlip A mask containing the tiles to flip
+     * @param player The player that should get all of these tiles
+     */
+    public void flipTiles(long tilesToFlip, Player player) {
+        while (tilesToFlip != 0) {
+            int tile = Long.numberOfTrailingZeros(tilesToFlip);
+            tilesToFlip &= tilesToFlip - 1;
+
+            setColor(player, tile % 8, tile / 8);
+            fireCellChanged(tile % 8, tile / 8);
         }
     }
 
@@ -134,7 +215,57 @@ public class ReversiModel {
      * @return A list of flippable tiles
      */
     public LinkedList<Integer> getFlippableTiles(int baseX, int baseY, Player player){
-        return getFlippableTiles(baseX, baseY, player, _board);
+        LinkedList<Integer> tilesToFlip = new LinkedList<>();
+
+        if (!moveIsOnBoard(baseX, baseY) || _state.getColor(baseY * 8 + baseX) != 0) {
+            System.out.println("Move is not on board, or the cell is already filled");
+            return tilesToFlip;
+        }
+
+        long flips = _state.getFlips(baseY * 8 + baseX, player.getCharacter());
+
+        while (flips != 0) {
+            tilesToFlip.add(Long.numberOfTrailingZeros(flips));
+            flips &= flips - 1;
+        }
+
+        return tilesToFlip;
+    }
+
+    /**
+     * Returns the flippable tiles for a certain player, without allocating a list
+     * @param x The x position
+     * @param y The y position
+     * @param player The player making the move
+     * @return A mask containing the flippable tiles, which is empty if the move is invalid
+     */
+    public long getFlipMask(int x, int y, Player player) {
+        if (!moveIsOnBoard(x, y))
+            return 0L;
+
+        int position = y * 8 + x;
+        char color = player.getCharacter();
+
+        // The status message, the validation and the move itself all ask for the same flips
+        if (_flipsVersion != _version || _flipsPosition != position || _flipsColor != color) {
+            _flips = (getMoves(color) & 1L << position) == 0 ? 0L : _state.getFlips(position, color);
+            _flipsPosition = position;
+            _flipsColor = color;
+            _flipsVersion = _version;
+        }
+
+        return _flips;
+    }
+
+    /**
+     * Checks whether a move would flip at least one tile, using the cached mask of possible moves
+     * @param x The x position
+     * @param y The y position
+     * @param player The player making the move
+     * @return Whether or not at least one tile would be flipped
+     */
+    public boolean hasAnyFlip(int x, int y, Player player) {
+        return moveIsOnBoard(x, y) && (getMoves(player.getCharacter()) & 1L << (y * 8 + x)) != 0;
     }
 
     /**
@@ -208,7 +339,7 @@ public class ReversiModel {
      * @return Whether or not the move is valid
      */
     public boolean isValidMove(int x, int y, Player player) {
-        return getFlippableTiles(x, y, player).size() > 0;
+        return hasAnyFlip(x, y, player);
     }
 
     /**
@@ -239,24 +370,54 @@ public class ReversiModel {
      * @return A list of possible moves
      */
     public ArrayList<Integer> getPossibleMoves(Player player) {
+        return BitBoard.toList(showPossibleMoves(player));
+    }
+
+    /**
+     * Returns the possible moves for the player and shows them on the board
+     * @param player The player to make a move
+     * @return A mask containing the possible moves
+     */
+    public long showPossibleMoves(Player player) {
         clearPossibleMoves();
-        ArrayList<Integer> possibleMoves = new ArrayList<>();
-        for (int i = 0; i < _board.length; i++) {
-            for (int j = 0; j < _board.length; j++) {
-                if (_board[i][j] == null) {
-                    if (isValidMove(i, j, player)) {
-                        possibleMoves.add(j * 8 + i);
-                        setPlayerAtPosition(_ghost, i, j);
-                        _view.setCellImage(i, j);
-                        //System.out.printf("Move from player %s\n", player.getUsername());
-                    }
-                }
-            }
+        long possibleMoves = getPossibleMovesMask(player);
+
+        for (long moves = possibleMoves; moves != 0; moves &= moves - 1) {
+            int position = Long.numberOfTrailingZeros(moves);
+
+            setColor(_ghost, position % 8, position / 8);
+            fireCellChanged(position % 8, position / 8);
         }
 
         return possibleMoves;
     }
 
+    /**
+     * Returns the possible moves for the player, without showing them
+     * @param player The player to make a move
+     * @return A mask containing the possible moves
+     */
+    public long getPossibleMovesMask(Player player) {
+        return getMoves(player.getCharacter());
+    }
+
+    /**
+     * Returns the legal moves of a color, computed only if the state changed since they were last
+     * asked for
+     * @param color The color
+     * @return A mask containing the legal moves
+     */
+    private long getMoves(char color) {
+        int index = color == 'b' ? 0 : 1;
+
+        if (_movesVersion[index] != _version) {
+            _moves[index] = _state.getMoves(color);
+            _movesVersion[index] = _version;
+        }
+
+        return _moves[index];
+    }
+
     /**
      * Returns a list of possible moves for the player
      * @param player The player to make a move
@@ -288,20 +449,50 @@ public class ReversiModel {
                 if (_board[i][j] == _ghost) {
                     //System.out.println(j * 8 + i);
                     _board[i][j] = null;
-                    _view.setCellImage(i, j);
+                    fireCellChanged(i, j);
                 }
             }
         }
     }
 
     /**
-     * Adds a player at position (x, y)
+     * Adds a player at position (x, y) and notifies the listeners of the cell and the score
      * @param player The player
      * @param x The x position
      * @param y The y position
      */
     public void setPlayerAtPosition(Player player, int x, int y) {
+        boolean countChanged = setColor(player, x, y);
+        fireCellChanged(x, y);
+
+        if (countChanged)
+            fireScoreChanged();
+    }
+
+    /**
+     * Adds a player at position (x, y) without notifying the score listeners
+     * @param player The player
+     * @param x The x position
+     * @param y The y position
+     * @return Whether or not the number of discs of a color changed
+     */
+    private boolean setColor(Player player, int x, int y) {
+        int position = y * 8 + x;
+        char oldColor = _state.getColor(position);
+        char newColor = player == null ? 0 : player.getCharacter();
+
         _board[x][y] = player;
+        _state.setColor(position, newColor);
+
+        // Ghosts aren't discs, so the count only changes if black or white is involved
+        newColor = _state.getColor(position);
+
+        if (oldColor == newColor)
+            return false;
+
+        _version++;
+
+        return true;
     }
 
     /**
@@ -311,6 +502,14 @@ public class ReversiModel {
         for (int i = 0; i < _board.length; i++)
             for (int j = 0; j < _board[i].length; j++)
                 _board[i][j] = null;
+
+        boolean hadDiscs = _state.getEmpty() != -1L;
+
+        _state.clear();
+        _version++;
+
+        if (hadDiscs)
+            fireScoreChanged();
     }
 
     /**
@@ -319,22 +518,22 @@ public class ReversiModel {
      */
     public int[] getScore() {
         int[] scores = new int[2];
-        scores[0] = 0;
-        scores[1] = 0;
-        for (int i = 0; i < _board.length; i++) {
-            for (int j = 0; j < _board[i].length; j++) {
-                if (_board[i][j] != null) {
-                    if (_board[i][j].getCharacter() == 'b') {
-                        scores[0]++;
-                    } else if (_board[i][j].getCharacter() == 'w') {
-                        scores[1]++;
-                    }
-                }
-            }
-        }
+        scores[0] = _state.getCount('b');
+        scores[1] = _state.getCount('w');
         return scores;
     }
 
+    /**
+     * Returns the number of discs of a player, without scanning the board
+     * @param player The player
+     * @return The number of discs
+     */
+    public int getScore(Player player) {
+        char color = player.getCharacter();
+
+        return color == 'b' || color == 'w' ? _state.getCount(color) : 0;
+    }
+
     /**
      * Clones the board by value.
      * @param boardToCopy The board that should be copied
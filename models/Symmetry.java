@@ -0,0 +1,227 @@
+/*
+ * Enjun
+ *
+ * @version     1.0 Beta 1
+ * @author      Rocking Stars
+ * @copyright   2018, Enjun
+ *
+ * Copyright 2018 RockingStars
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rockingstar.modules.Reversi.models;
+
+/**
+ * The eight symmetries of the board (the rotations and reflections of the square), applied to
+ * bitboards with a few shifts and masks each. A symmetry is a number from 0 to 7 that combines a
+ * transposition (4), a horizontal mirror (1) and a vertical mirror (2), applied in that order.
+ *
+ * Positions that are symmetric to each other have the same canonical form, so caches, books and
+ * training sets that store canonical positions need up to eight times fewer entries.
+ * @author Rocking Stars
+ * @since 1.0 Beta 1
+ */
+public final class Symmetry {
+
+    /**
+     * The number of symmetries
+     */
+    public static final int COUNT = 8;
+
+    /**
+     * Symmetry flags
+     */
+    public static final int MIRROR_HORIZONTAL = 1;
+    public static final int MIRROR_VERTICAL = 2;
+    public static final int TRANSPOSE = 4;
+
+    private Symmetry() {
+    }
+
+    /**
+     * Applies a symmetry to a set of cells
+     * @param cells The cells
+     * @param symmetry The symmetry (0 to 7)
+     * @return The transformed cells
+     */
+    public static long transform(long cells, int symmetry) {
+        if ((symmetry & TRANSPOSE) != 0)
+            cells = transpose(cells);
+
+        if ((symmetry & MIRROR_HORIZONTAL) != 0)
+            cells = mirrorHorizontal(cells);
+
+        if ((symmetry & MIRROR_VERTICAL) != 0)
+            cells = mirrorVertical(cells);
+
+        return cells;
+    }
+
+    /**
+     * Undoes a symmetry for a set of cells
+     * @param cells The transformed cells
+     * @param symmetry The symmetry (0 to 7)
+     * @return The original cells
+     */
+    public static long untransform(long cells, int symmetry) {
+        if ((symmetry & MIRROR_VERTICAL) != 0)
+            cells = mirrorVertical(cells);
+
+        if ((symmetry & MIRROR_HORIZONTAL) != 0)
+            cells = mirrorHorizontal(cells);
+
+        if ((symmetry & TRANSPOSE) != 0)
+            cells = transpose(cells);
+
+        return cells;
+    }
+
+    /**
+     * Applies a symmetry to a cell
+     * @param position The position of the cell. Positions outside the board (like a pass) are returned as they are.
+     * @param symmetry The symmetry (0 to 7)
+     * @return The position of the transformed cell
+     */
+    public static int transformPosition(int position, int symmetry) {
+        if (position < 0 || position >= 64)
+            return position;
+
+        int x = position & 7;
+        int y = position >>> 3;
+
+        if ((symmetry & TRANSPOSE) != 0) {
+            int t = x;
+            x = y;
+            y = t;
+        }
+
+        if ((symmetry & MIRROR_HORIZONTAL) != 0)
+            x = 7 - x;
+
+        if ((symmetry & MIRROR_VERTICAL) != 0)
+            y = 7 - y;
+
+        return y << 3 | x;
+    }
+
+    /**
+     * Undoes a symmetry for a cell, for example to map a move of a canonical position back to the
+     * original position
+     * @param position The position of the transformed cell. Positions outside the board are returned as they are.
+     * @param symmetry The symmetry (0 to 7)
+     * @return The position of the original cell
+     */
+    public static int untransformPosition(int position, int symmetry) {
+        if (position < 0 || position >= 64)
+            return position;
+
+        int x = position & 7;
+        int y = position >>> 3;
+
+        if ((symmetry & MIRROR_VERTICAL) != 0)
+            y = 7 - y;
+
+        if ((symmetry & MIRROR_HORIZONTAL) != 0)
+            x = 7 - x;
+
+        if ((symmetry & TRANSPOSE) != 0) {
+            int t = x;
+            x = y;
+            y = t;
+        }
+
+        return y << 3 | x;
+    }
+
+    /**
+     * Returns the symmetry that gives the canonical form of a position: the form with the smallest
+     * black cells, and of those the smallest white cells (compared as unsigned numbers)
+     * @param black The cells occupied by black
+     * @param white The cells occupied by white
+     * @return The symmetry (0 to 7)
+     */
+    public static int getCanonicalSymmetry(long black, long white) {
+        int best = 0;
+        long bestBlack = black;
+        long bestWhite = white;
+
+        for (int symmetry = 1; symmetry < COUNT; symmetry++) {
+            long transformedBlack = transform(black, symmetry);
+            int compare = Long.compareUnsigned(transformedBlack, bestBlack);
+
+            if (compare > 0)
+                continue;
+
+            long transformedWhite = transform(white, symmetry);
+
+            if (compare < 0 || Long.compareUnsigned(transformedWhite, bestWhite) < 0) {
+                best = symmetry;
+                bestBlack = transformedBlack;
+                bestWhite = transformedWhite;
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Returns the canonical form of a position
+     * @param board The position
+     * @return A new board with the canonical form
+     */
+    public static BitBoard canonicalize(BitBoard board) {
+        int symmetry = getCanonicalSymmetry(board.getBlack(), board.getWhite());
+
+        return new BitBoard(transform(board.getBlack(), symmetry), transform(board.getWhite(), symmetry));
+    }
+
+    /**
+     * Swaps the rows of the board (y becomes 7 - y)
+     * @param cells The cells
+     * @return The mirrored cells
+     */
+    public static long mirrorVertical(long cells) {
+        return Long.reverseBytes(cells);
+    }
+
+    /**
+     * Swaps the columns of the board (x becomes 7 - x) by reversing the bits of every byte
+     * @param cells The cells
+     * @return The mirrored cells
+     */
+    public static long mirrorHorizontal(long cells) {
+        cells = cells >>> 1 & 0x5555555555555555L | (cells & 0x5555555555555555L) << 1;
+        cells = cells >>> 2 & 0x3333333333333333L | (cells & 0x3333333333333333L) << 2;
+        cells = cells >>> 4 & 0x0f0f0f0f0f0f0f0fL | (cells & 0x0f0f0f0f0f0f0f0fL) << 4;
+
+        return cells;
+    }
+
+    /**
+     * Swaps x and y, mirroring the board in the diagonal through (0, 0) and (7, 7). The 4x4, 2x2 and
+     * 1x1 blocks on either side of the diagonal are swapped with three delta swaps.
+     * @param cells The cells
+     * @return The transposed cells
+     */
+    public static long transpose(long cells) {
+        long t = 0x0f0f0f0f00000000L & (cells ^ cells << 28);
+        cells ^= t ^ t >>> 28;
+        t = 0x3333000033330000L & (cells ^ cells << 14);
+        cells ^= t ^ t >>> 14;
+        t = 0x5500550055005500L & (cells ^ cells << 7);
+        cells ^= t ^ t >>> 7;
+
+        return cells;
+    }
+}
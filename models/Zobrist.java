@@ -0,0 +1,122 @@
+/*
+ * Enjun
+ *
+ * @version     1.0 Beta 1
+ * @author      Rocking Stars
+ * @copyright   2018, Enjun
+ *
+ * Copyright 2018 RockingStars
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rockingstar.modules.Reversi.models;
+
+/**
+ * Random keys for Zobrist hashing. The hash of a position is the XOR of the keys of all occupied
+ * cells, so it can be updated incrementally when discs are placed or flipped.
+ * @author Rocking Stars
+ * @since 1.0 Beta 1
+ */
+public final class Zobrist {
+
+    /**
+     * The key of a black disc at each position
+     */
+    public static final long[] BLACK = new long[64];
+
+    /**
+     * The key of a white disc at each position
+     */
+    public static final long[] WHITE = new long[64];
+
+    /**
+     * The key that is XORed into the hash when a disc at each position is flipped
+     */
+    public static final long[] FLIP = new long[64];
+
+    /**
+     * The key that is XORed into the hash when white is to move
+     */
+    public static final long WHITE_TO_MOVE;
+
+    static {
+        // A fixed seed, so hashes are the same in every run (and can be stored in files)
+        long seed = 0x5245564552534921L;
+
+        for (int position = 0; position < 64; position++) {
+            seed = nextKey(seed);
+            BLACK[position] = mix(seed);
+            seed = nextKey(seed);
+            WHITE[position] = mix(seed);
+            FLIP[position] = BLACK[position] ^ WHITE[position];
+        }
+
+        WHITE_TO_MOVE = mix(nextKey(seed));
+    }
+
+    private Zobrist() {
+    }
+
+    /**
+     * Computes the hash of a position from scratch
+     * @param black The cells occupied by black
+     * @param white The cells occupied by white
+     * @return The hash
+     */
+    public static long hash(long black, long white) {
+        long hash = 0L;
+
+        for (; black != 0; black &= black - 1)
+            hash ^= BLACK[Long.numberOfTrailingZeros(black)];
+
+        for (; white != 0; white &= white - 1)
+            hash ^= WHITE[Long.numberOfTrailingZeros(white)];
+
+        return hash;
+    }
+
+    /**
+     * Returns the change of the hash when a number of discs is flipped
+     * @param flips The flipped discs
+     * @return The value to XOR into the hash
+     */
+    public static long flips(long flips) {
+        long hash = 0L;
+
+        for (; flips != 0; flips &= flips - 1)
+            hash ^= FLIP[Long.numberOfTrailingZeros(flips)];
+
+        return hash;
+    }
+
+    /**
+     * Advances the seed (SplitMix64)
+     * @param seed The seed
+     * @return The next seed
+     */
+    private static long nextKey(long seed) {
+        return seed + 0x9e3779b97f4a7c15L;
+    }
+
+    /**
+     * Scrambles a seed into a key (SplitMix64)
+     * @param value The seed
+     * @return The key
+     */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+}
@@ -0,0 +1,335 @@
+/*
+ * Enjun
+ *
+ * @version     1.0 Beta 1
+ * @author      Rocking Stars
+ * @copyright   2018, Enjun
+ *
+ * Copyright 2018 RockingStars
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rockingstar.modules.Reversi.server;
+
+import com.rockingstar.modules.Reversi.ai.OpeningBook;
+import com.rockingstar.modules.Reversi.ai.PatternEvaluator;
+import com.rockingstar.modules.Reversi.ai.PatternWeights;
+import com.rockingstar.modules.Reversi.ai.SearchEngine;
+import com.rockingstar.modules.Reversi.ai.TranspositionTable;
+import com.rockingstar.modules.Reversi.models.BitBoard;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Plays many AI-vs-AI games at once without a GUI or a server connection, as used for ladders. A
+ * game is only a small state object (a board, the color to move and its move latencies); its moves
+ * are tasks on a fixed pool of worker threads, so thousands of games share a few threads. Every
+ * worker has its own search and transposition table, and all of them share the read-only weights
+ * and opening book.
+ *
+ * The latency of a move is the time from when it was due (the previous move was played) until it
+ * was played, so it includes the time the game waited for a worker. For every number of concurrent
+ * games, the report shows the games per second and the median and p99 move latency.
+ *
+ * Usage: MatchRunner [depth] [threads] [concurrentGames...]
+ * @author Rocking Stars
+ * @since 1.0 Beta 1
+ */
+public class MatchRunner {
+
+    /**
+     * The numbers of concurrent games that are measured when none are given
+     */
+    private static final int[] DEFAULT_CONCURRENCY = {10, 100, 1000, 10000};
+
+    /**
+     * At least this many games are played for every number of concurrent games
+     */
+    private static final int MIN_GAMES = 200;
+
+    /**
+     * The number of random moves at the start of every game, so the games differ
+     */
+    private static final int RANDOM_OPENING_MOVES = 4;
+
+    /**
+     * The memory budget of the transposition table of each worker, in megabytes
+     */
+    private static final int TABLE_SIZE = 8;
+
+    /**
+     * The shared read-only tables
+     */
+    private PatternWeights _weights;
+    private OpeningBook _book;
+
+    /**
+     * The search depth of the players
+     */
+    private int _depth;
+
+    /**
+     * The workers, and the search of each worker thread
+     */
+    private ExecutorService _workers;
+    private ThreadLocal<SearchEngine> _engines;
+
+    /**
+     * The number of games that still have to be started, and the games that haven't finished
+     */
+    private AtomicInteger _gamesLeft;
+    private CountDownLatch _finished;
+
+    /**
+     * The latencies of all played moves, in ns
+     */
+    private long[] _latencies = new long[1024];
+    private int _latencyCount;
+
+    /**
+     * The number of played games and moves
+     */
+    private AtomicInteger _gamesPlayed = new AtomicInteger();
+    private long _moves;
+
+    /**
+     * MatchRunner constructor
+     * @param weights The weights of the evaluation, shared by all workers
+     * @param book The opening book, shared by all workers
+     * @param depth The search depth of the players
+     * @param threads The number of worker threads
+     */
+    public MatchRunner(PatternWeights weights, OpeningBook book, int depth, int threads) {
+        _weights = weights;
+        _book = book;
+        _depth = depth;
+        _engines = ThreadLocal.withInitial(() ->
+                new SearchEngine(new PatternEvaluator(_weights), new TranspositionTable(TABLE_SIZE)));
+        _workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "Reversi match worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int[] concurrency = DEFAULT_CONCURRENCY;
+
+        if (args.length > 2) {
+            concurrency = new int[args.length - 2];
+
+            for (int i = 2; i < args.length; i++)
+                concurrency[i - 2] = Integer.parseInt(args[i]);
+        }
+
+        PatternWeights weights = PatternWeights.loadDefault();
+        OpeningBook book = OpeningBook.loadDefault();
+
+        System.out.printf("Depth %d, %d worker threads, book with %d entries%n", depth, threads, book.size());
+        System.out.println("concurrent    games   time (s)   games/sec    moves/sec   p50 (ms)   p99 (ms)");
+
+        for (int games : concurrency) {
+            MatchRunner runner = new MatchRunner(weights, book, depth, threads);
+            long start = System.nanoTime();
+
+            runner.run(Math.max(games, MIN_GAMES), games);
+
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            System.out.printf("%10d %8d %10.2f %11.1f %12.0f %10.2f %10.2f%n", games, runner.getGamesPlayed(), seconds,
+                    runner.getGamesPlayed() / seconds, runner.getMoves() / seconds,
+                    runner.getLatencyPercentile(50) / 1e6, runner.getLatencyPercentile(99) / 1e6);
+
+            runner.shutdown();
+        }
+    }
+
+    /**
+     * Plays games and waits for them to finish
+     * @param games The number of games
+     * @param concurrentGames The number of games that are played at the same time
+     * @throws InterruptedException If the calling thread is interrupted while waiting
+     */
+    public void run(int games, int concurrentGames) throws InterruptedException {
+        _gamesLeft = new AtomicInteger(games);
+        _finished = new CountDownLatch(games);
+
+        for (int i = 0; i < Math.min(games, concurrentGames); i++)
+            startGame();
+
+        _finished.await();
+    }
+
+    /**
+     * Starts a new game, if there are games left
+     */
+    private void startGame() {
+        int game = _gamesLeft.decrementAndGet();
+
+        if (game >= 0)
+            _workers.execute(new Game(game)::playMove);
+    }
+
+    /**
+     * Records the latencies of a finished game
+     * @param latencies The latencies
+     * @param count The number of latencies
+     */
+    private synchronized void record(long[] latencies, int count) {
+        if (_latencyCount + count > _latencies.length)
+            _latencies = Arrays.copyOf(_latencies, Math.max(_latencies.length * 2, _latencyCount + count));
+
+        System.arraycopy(latencies, 0, _latencies, _latencyCount, count);
+        _latencyCount += count;
+        _moves += count;
+    }
+
+    /**
+     * Returns a percentile of the move latencies
+     * @param percentile The percentile (0 to 100)
+     * @return The latency in ns
+     */
+    public synchronized long getLatencyPercentile(double percentile) {
+        if (_latencyCount == 0)
+            return 0;
+
+        long[] sorted = Arrays.copyOf(_latencies, _latencyCount);
+        Arrays.sort(sorted);
+
+        return sorted[(int) Math.min(_latencyCount - 1, Math.ceil(percentile / 100 * _latencyCount) - 1)];
+    }
+
+    /**
+     * Returns the number of finished games
+     * @return The number of games
+     */
+    public int getGamesPlayed() {
+        return _gamesPlayed.get();
+    }
+
+    /**
+     * Returns the number of played moves of the finished games
+     * @return The number of moves
+     */
+    public synchronized long getMoves() {
+        return _moves;
+    }
+
+    /**
+     * Stops the workers
+     */
+    public void shutdown() {
+        _workers.shutdownNow();
+    }
+
+    /**
+     * The state of one game. Every move is a separate task, so games take turns on the workers.
+     */
+    private class Game {
+
+        private BitBoard _board = new BitBoard();
+        private char _color = 'b';
+        private Random _random;
+        private int _plies;
+        private long[] _latencies = new long[64];
+        private int _latencyCount;
+
+        /**
+         * When the next move was due, in ns
+         */
+        private long _due;
+
+        /**
+         * Game constructor
+         * @param seed The seed of the random opening moves
+         */
+        Game(long seed) {
+            _board.setStartingPositions();
+            _random = new Random(seed);
+            _due = System.nanoTime();
+        }
+
+        /**
+         * Plays one move, and schedules the next one or finishes the game
+         */
+        void playMove() {
+            long moves = _board.getMoves(_color);
+            char opponent = _color == 'b' ? 'w' : 'b';
+
+            if (moves == 0) {
+                if (_board.getMoves(opponent) == 0) {
+                    finish();
+                    return;
+                }
+
+                _color = opponent;
+                moves = _board.getMoves(_color);
+                opponent = _color == 'b' ? 'w' : 'b';
+            }
+
+            _board.makeMove(chooseMove(moves), _color);
+            _color = opponent;
+            _plies++;
+
+            long now = System.nanoTime();
+
+            if (_latencyCount < _latencies.length)
+                _latencies[_latencyCount++] = now - _due;
+
+            _due = now;
+            _workers.execute(this::playMove);
+        }
+
+        /**
+         * Chooses the move of the color to move: random in the opening, then from the book, then
+         * from a fixed-depth search
+         * @param moves The legal moves
+         * @return The position of the move
+         */
+        private int chooseMove(long moves) {
+            if (_plies < RANDOM_OPENING_MOVES) {
+                int index = _random.nextInt(Long.bitCount(moves));
+
+                for (int i = 0; i < index; i++)
+                    moves &= moves - 1;
+
+                return Long.numberOfTrailingZeros(moves);
+            }
+
+            int move = _book.lookup(_board, _color);
+
+            if (move != OpeningBook.NO_MOVE && (moves & 1L << move) != 0)
+                return move;
+
+            return _engines.get().findMove(_board, _color, Long.MAX_VALUE / 2, _depth);
+        }
+
+        /**
+         * Records the game and starts the next one
+         */
+        private void finish() {
+            record(_latencies, _latencyCount);
+            _gamesPlayed.incrementAndGet();
+            startGame();
+            _finished.countDown();
+        }
+    }
+}
@@ -0,0 +1,479 @@
+/*
+ * Enjun
+ *
+ * @version     1.0 Beta 1
+ * @author      Rocking Stars
+ * @copyright   2018, Enjun
+ *
+ * Copyright 2018 RockingStars
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rockingstar.modules.Reversi.server;
+
+import com.rockingstar.modules.Reversi.ai.SearchEngine;
+import com.rockingstar.modules.Reversi.ai.SimpleEvaluator;
+import com.rockingstar.modules.Reversi.ai.TranspositionTable;
+import com.rockingstar.modules.Reversi.models.BitBoard;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A local stand-in for the tournament server, speaking the same line based protocol, so the client
+ * move pipeline (MoveCommand, ForfeitCommand, doPlayerMove and gameEnded) can be load-tested on one
+ * machine. Point the client at localhost and this port instead of the tournament server.
+ *
+ * Every client that subscribes to Reversi is matched with its own simulated opponent, so any number
+ * of clients can play at the same time. The opponent answers after an injected latency (with
+ * jitter), and plays random moves or runs a shallow search. When a player has no legal moves, its
+ * turn is passed and the other player moves again. After a game, a new one starts until every client
+ * played the configured number of games.
+ *
+ * The server measures the turn latency of the clients: the time from sending YOURTURN until the move
+ * arrives, which is the round trip through the client's turn handling. A report is printed every
+ * REPORT_INTERVAL seconds.
+ *
+ * Usage: StandInServer [-port p] [-latency ms] [-jitter ms] [-depth d] [-games n]
+ * A depth of 0 makes the opponents play random moves.
+ * @author Rocking Stars
+ * @since 1.0 Beta 1
+ */
+public class StandInServer {
+
+    /**
+     * The port of the tournament server
+     */
+    public static final int DEFAULT_PORT = 7789;
+
+    /**
+     * The interval between reports, in seconds
+     */
+    private static final int REPORT_INTERVAL = 10;
+
+    /**
+     * The settings of the simulated opponents
+     */
+    private long _latency;
+    private long _jitter;
+    private int _depth;
+    private int _gamesPerClient;
+
+    /**
+     * Runs the delayed opponent moves and the reports
+     */
+    private ScheduledExecutorService _scheduler;
+
+    /**
+     * The number of connected clients, started and finished games, and received moves
+     */
+    private AtomicInteger _clients = new AtomicInteger();
+    private AtomicInteger _gamesStarted = new AtomicInteger();
+    private AtomicInteger _gamesFinished = new AtomicInteger();
+    private AtomicInteger _illegalMoves = new AtomicInteger();
+
+    /**
+     * The turn latencies of the clients, in ns
+     */
+    private long[] _latencies = new long[1024];
+    private int _latencyCount;
+
+    /**
+     * StandInServer constructor
+     * @param latency The time the opponents take for a move, in ms
+     * @param jitter The maximum random time added to the latency, in ms
+     * @param depth The search depth of the opponents, 0 for random moves
+     * @param gamesPerClient The number of games every client plays
+     */
+    public StandInServer(long latency, long jitter, int depth, int gamesPerClient) {
+        _latency = latency;
+        _jitter = jitter;
+        _depth = depth;
+        _gamesPerClient = gamesPerClient;
+        _scheduler = Executors.newScheduledThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+            Thread thread = new Thread(runnable, "Stand-in server scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = DEFAULT_PORT;
+        long latency = 50;
+        long jitter = 0;
+        int depth = 0;
+        int games = 1;
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "-port":
+                    port = Integer.parseInt(args[i + 1]);
+                    break;
+                case "-latency":
+                    latency = Long.parseLong(args[i + 1]);
+                    break;
+                case "-jitter":
+                    jitter = Long.parseLong(args[i + 1]);
+                    break;
+                case "-depth":
+                    depth = Integer.parseInt(args[i + 1]);
+                    break;
+                case "-games":
+                    games = Integer.parseInt(args[i + 1]);
+                    break;
+                default:
+                    System.out.println("Usage: StandInServer [-port p] [-latency ms] [-jitter ms] [-depth d] [-games n]");
+                    return;
+            }
+        }
+
+        new StandInServer(latency, jitter, depth, games).listen(port);
+    }
+
+    /**
+     * Accepts clients until the process is stopped
+     * @param port The port
+     * @throws IOException If the port can't be opened
+     */
+    public void listen(int port) throws IOException {
+        _scheduler.scheduleAtFixedRate(() -> System.out.println(getReport()), REPORT_INTERVAL, REPORT_INTERVAL, TimeUnit.SECONDS);
+
+        try (ServerSocket server = new ServerSocket(port)) {
+            System.out.println("Stand-in server listening on port " + port);
+
+            while (true) {
+                Socket socket = server.accept();
+
+                // Moves are small messages that are sent in bursts, Nagle's algorithm would delay them
+                socket.setTcpNoDelay(true);
+                Thread thread = new Thread(new Session(socket)::run, "Stand-in server client");
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+    }
+
+    /**
+     * Records the turn latency of a client
+     * @param latency The latency in ns
+     */
+    private synchronized void recordLatency(long latency) {
+        if (_latencyCount == _latencies.length)
+            _latencies = Arrays.copyOf(_latencies, _latencies.length * 2);
+
+        _latencies[_latencyCount++] = latency;
+    }
+
+    /**
+     * Returns a report of the clients, games and turn latencies so far
+     * @return The report
+     */
+    public synchronized String getReport() {
+        long[] sorted = Arrays.copyOf(_latencies, _latencyCount);
+        Arrays.sort(sorted);
+
+        return String.format("%d clients, %d games started, %d finished, %d turns: p50 %.1f ms, p99 %.1f ms, max %.1f ms, %d illegal moves",
+                _clients.get(), _gamesStarted.get(), _gamesFinished.get(), _latencyCount,
+                percentile(sorted, 50) / 1e6, percentile(sorted, 99) / 1e6,
+                (sorted.length == 0 ? 0 : sorted[sorted.length - 1]) / 1e6, _illegalMoves.get());
+    }
+
+    /**
+     * Returns a percentile of sorted values
+     * @param sorted The values, sorted
+     * @param percentile The percentile (0 to 100)
+     * @return The value, or 0 if there are none
+     */
+    private static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0)
+            return 0;
+
+        return sorted[(int) Math.max(0, Math.ceil(percentile / 100 * sorted.length) - 1)];
+    }
+
+    /**
+     * The connection of one client, with its simulated opponent and the game they play
+     */
+    private class Session {
+
+        private Socket _socket;
+        private PrintWriter _output;
+        private Random _random = new Random();
+        private SearchEngine _engine;
+
+        private String _name = "client";
+        private String _opponentName;
+
+        /**
+         * The game: the board, the color of the client and the color to move
+         */
+        private BitBoard _board;
+        private char _clientColor;
+        private char _color;
+        private boolean _playing;
+        private int _gamesPlayed;
+
+        /**
+         * When YOURTURN was sent, in ns
+         */
+        private long _turnSent;
+
+        /**
+         * Session constructor
+         * @param socket The connection
+         */
+        Session(Socket socket) {
+            _socket = socket;
+            _opponentName = "opponent" + _clients.incrementAndGet();
+
+            if (_depth > 0)
+                _engine = new SearchEngine(new SimpleEvaluator(), new TranspositionTable(1));
+        }
+
+        /**
+         * Handles the commands of the client until it disconnects
+         */
+        void run() {
+            try (BufferedReader input = new BufferedReader(new InputStreamReader(_socket.getInputStream(), StandardCharsets.UTF_8));
+                 PrintWriter output = new PrintWriter(_socket.getOutputStream(), true)) {
+                _output = output;
+                send("Reversi stand-in game server");
+                send("(local load testing, not the tournament server)");
+
+                String line;
+
+                while ((line = input.readLine()) != null) {
+                    if (!handle(line.trim()))
+                        break;
+                }
+            }
+            catch (IOException e) {
+                System.out.println("Client " + _name + " disconnected: " + e.getMessage());
+            }
+            finally {
+                _clients.decrementAndGet();
+
+                synchronized (this) {
+                    _playing = false;
+                }
+            }
+        }
+
+        /**
+         * Handles a command
+         * @param line The command
+         * @return Whether or not the connection stays open
+         */
+        private synchronized boolean handle(String line) {
+            String[] parts = line.split("\\s+", 2);
+            String command = parts[0].toLowerCase();
+            String argument = parts.length > 1 ? parts[1] : "";
+
+            switch (command) {
+                case "login":
+                    _name = argument.isEmpty() ? _name : argument;
+                    send("OK");
+                    break;
+                case "logout":
+                case "exit":
+                case "quit":
+                case "disconnect":
+                case "bye":
+                    return false;
+                case "get":
+                    send("OK");
+                    send(argument.toLowerCase().startsWith("gamelist") ? "SVR GAMELIST [\"Reversi\"]"
+                            : "SVR PLAYERLIST [\"" + _name + "\", \"" + _opponentName + "\"]");
+                    break;
+                case "subscribe":
+                case "challenge":
+                    send("OK");
+
+                    if (!_playing)
+                        startGame();
+
+                    break;
+                case "move":
+                    handleMove(argument);
+                    break;
+                case "forfeit":
+                    send("OK");
+
+                    if (_playing)
+                        endGame(true);
+
+                    break;
+                case "help":
+                    send("OK");
+                    send("SVR HELP login, logout, get gamelist, get playerlist, subscribe, move, forfeit");
+                    break;
+                default:
+                    send("ERR Unknown command: " + command);
+            }
+
+            return true;
+        }
+
+        /**
+         * Starts a game, with a random player starting as black
+         */
+        private void startGame() {
+            _board = new BitBoard();
+            _board.setStartingPositions();
+            _clientColor = _random.nextBoolean() ? 'b' : 'w';
+            _color = 'b';
+            _playing = true;
+            _gamesStarted.incrementAndGet();
+
+            send("SVR GAME MATCH {PLAYERTOMOVE: \"" + (_clientColor == 'b' ? _name : _opponentName)
+                    + "\", GAMETYPE: \"Reversi\", OPPONENT: \"" + _opponentName + "\"}");
+            nextTurn();
+        }
+
+        /**
+         * Handles a move of the client
+         * @param argument The position of the move
+         */
+        private void handleMove(String argument) {
+            int position;
+
+            try {
+                position = Integer.parseInt(argument.trim());
+            }
+            catch (NumberFormatException e) {
+                send("ERR Invalid move: " + argument);
+                return;
+            }
+
+            if (!_playing || _color != _clientColor) {
+                send("ERR Not your turn");
+                return;
+            }
+
+            if (position < 0 || position >= 64 || (_board.getMoves(_color) & 1L << position) == 0) {
+                _illegalMoves.incrementAndGet();
+                send("ERR Illegal move");
+                return;
+            }
+
+            recordLatency(System.nanoTime() - _turnSent);
+            send("OK");
+            play(_name, position);
+        }
+
+        /**
+         * Plays a move and sends it to the client, like the tournament server does for both players
+         * @param player The name of the player
+         * @param position The position of the move
+         */
+        private void play(String player, int position) {
+            _board.makeMove(position, _color);
+            _color = _color == 'b' ? 'w' : 'b';
+
+            send("SVR GAME MOVE {PLAYER: \"" + player + "\", MOVE: \"" + position + "\", DETAILS: \"\"}");
+            nextTurn();
+        }
+
+        /**
+         * Passes if the color to move can't move, ends the game if neither can, and otherwise asks
+         * the client or the opponent for a move
+         */
+        private void nextTurn() {
+            if (_board.getMoves(_color) == 0) {
+                _color = _color == 'b' ? 'w' : 'b';
+
+                if (_board.getMoves(_color) == 0) {
+                    endGame(false);
+                    return;
+                }
+            }
+
+            if (_color == _clientColor) {
+                _turnSent = System.nanoTime();
+                send("SVR GAME YOURTURN {TURNMESSAGE: \"\"}");
+            }
+            else {
+                long delay = _latency + (_jitter > 0 ? (long) (_random.nextDouble() * _jitter) : 0);
+                _scheduler.schedule(this::playOpponentMove, delay, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        /**
+         * Plays the move of the simulated opponent
+         */
+        private synchronized void playOpponentMove() {
+            if (!_playing || _color == _clientColor)
+                return;
+
+            long moves = _board.getMoves(_color);
+            int position;
+
+            if (_engine != null)
+                position = _engine.findMove(_board, _color, Long.MAX_VALUE / 2, _depth);
+            else {
+                int index = _random.nextInt(Long.bitCount(moves));
+
+                for (int i = 0; i < index; i++)
+                    moves &= moves - 1;
+
+                position = Long.numberOfTrailingZeros(moves);
+            }
+
+            play(_opponentName, position);
+        }
+
+        /**
+         * Ends the game, and starts a new one if the client has games left
+         * @param forfeit Whether or not the client forfeited
+         */
+        private void endGame(boolean forfeit) {
+            int clientDiscs = _board.getCount(_clientColor);
+            int opponentDiscs = _board.getCount(_clientColor == 'b' ? 'w' : 'b');
+            String result = forfeit || clientDiscs < opponentDiscs ? "LOSS" : clientDiscs > opponentDiscs ? "WIN" : "DRAW";
+
+            send("SVR GAME " + result + " {PLAYERONESCORE: \"" + clientDiscs + "\", PLAYERTWOSCORE: \""
+                    + opponentDiscs + "\", COMMENT: \"" + (forfeit ? "Player forfeited match" : "") + "\"}");
+
+            _playing = false;
+            _gamesFinished.incrementAndGet();
+
+            if (++_gamesPlayed < _gamesPerClient)
+                _scheduler.schedule(() -> {
+                    synchronized (this) {
+                        if (!_playing && !_socket.isClosed())
+                            startGame();
+                    }
+                }, _latency, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * Sends a line to the client
+         * @param line The line
+         */
+        private void send(String line) {
+            _output.println(line);
+        }
+    }
+}
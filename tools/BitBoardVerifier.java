@@ -0,0 +1,220 @@
+/*
+ * Enjun
+ *
+ * @version     1.0 Beta 1
+ * @author      Rocking Stars
+ * @copyright   2018, Enjun
+ *
+ * Copyright 2018 RockingStars
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rockingstar.modules.Reversi.tools;
+
+import com.rockingstar.engine.game.Player;
+import com.rockingstar.modules.Reversi.models.BitBoard;
+import com.rockingstar.modules.Reversi.models.ReversiModel;
+
+import java.util.LinkedList;
+import java.util.Random;
+
+/**
+ * Cross-checks the BitBoard move generation against the original array based implementation in
+ * ReversiModel, on random positions. Half of the positions are reached by playing random moves from
+ * the starting position, the other half are random fillings of the board.
+ *
+ * Usage: BitBoardVerifier [positions] [seed]
+ * @author Rocking Stars
+ * @since 1.0 Beta 1
+ */
+public class BitBoardVerifier {
+
+    /**
+     * The reference implementation
+     */
+    private ReversiModel _reference;
+
+    /**
+     * The players used to fill the reference board
+     */
+    private Player _black;
+    private Player _white;
+
+    /**
+     * Random number generator
+     */
+    private Random _random;
+
+    /**
+     * Number of checked positions, moves and mismatches
+     */
+    private long _positions;
+    private long _moves;
+    private long _mismatches;
+
+    /**
+     * BitBoardVerifier constructor
+     * @param seed The seed for the random positions
+     */
+    public BitBoardVerifier(long seed) {
+        _reference = new ReversiModel();
+        _black = new Player("Black", null, 'b');
+        _white = new Player("White", null, 'w');
+        _random = new Random(seed);
+    }
+
+    public static void main(String[] args) {
+        long positions = args.length > 0 ? Long.parseLong(args[0]) : 1000000L;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+
+        BitBoardVerifier verifier = new BitBoardVerifier(seed);
+        long start = System.currentTimeMillis();
+
+        verifier.run(positions);
+
+        System.out.printf("Checked %d positions and %d moves in %d ms (seed %d): %d mismatches%n",
+                verifier._positions, verifier._moves, System.currentTimeMillis() - start, seed, verifier._mismatches);
+
+        if (verifier._mismatches > 0)
+            System.exit(1);
+    }
+
+    /**
+     * Checks a number of random positions
+     * @param positions The number of positions to check
+     */
+    public void run(long positions) {
+        while (_positions < positions) {
+            if (_random.nextBoolean())
+                playRandomGame(positions);
+            else
+                check(randomFilling());
+        }
+    }
+
+    /**
+     * Plays a random game from the starting position, checking every position along the way
+     * @param limit The maximum number of checked positions
+     */
+    private void playRandomGame(long limit) {
+        BitBoard board = new BitBoard();
+        board.setStartingPositions();
+        char color = 'b';
+
+        while (_positions < limit) {
+            check(board);
+
+            long moves = board.getMoves(color);
+
+            if (moves == 0) {
+                color = color == 'b' ? 'w' : 'b';
+                moves = board.getMoves(color);
+
+                if (moves == 0)
+                    return;
+            }
+
+            int move = pickRandom(moves);
+            board.applyMove(move, board.getFlips(move, color), color);
+            color = color == 'b' ? 'w' : 'b';
+        }
+    }
+
+    /**
+     * Creates a board where every cell is randomly black, white or empty
+     * @return The board
+     */
+    private BitBoard randomFilling() {
+        long occupied = _random.nextLong() | _random.nextLong();
+        long black = occupied & _random.nextLong();
+
+        return new BitBoard(black, occupied & ~black);
+    }
+
+    /**
+     * Compares the flips of every empty cell for both colors
+     * @param board The board to check
+     */
+    private void check(BitBoard board) {
+        Player[][] cells = new Player[8][8];
+
+        for (int position = 0; position < 64; position++) {
+            char color = board.getColor(position);
+            cells[position % 8][position / 8] = color == 'b' ? _black : color == 'w' ? _white : null;
+        }
+
+        for (Player player : new Player[] {_black, _white}) {
+            long moves = board.getMoves(player.getCharacter());
+            long expectedMoves = 0L;
+
+            for (int position = 0; position < 64; position++) {
+                if (cells[position % 8][position / 8] != null)
+                    continue;
+
+                LinkedList<Integer> expected = _reference.getFlippableTiles(position % 8, position / 8, player, cells);
+                long expectedFlips = 0L;
+
+                for (int tile : expected)
+                    expectedFlips |= 1L << tile;
+
+                if (expectedFlips != 0)
+                    expectedMoves |= 1L << position;
+
+                long flips = board.getFlips(position, player.getCharacter());
+
+                if (flips != expectedFlips)
+                    reportMismatch(board, "flips of " + player.getCharacter() + " at " + position, expectedFlips, flips);
+
+                if (board.hasAnyFlip(position, player.getCharacter()) != (expectedFlips != 0))
+                    reportMismatch(board, "validity of " + player.getCharacter() + " at " + position, expectedFlips, flips);
+
+                _moves++;
+            }
+
+            if (moves != expectedMoves)
+                reportMismatch(board, "moves of " + player.getCharacter(), expectedMoves, moves);
+        }
+
+        _positions++;
+    }
+
+    /**
+     * Prints a mismatch between the reference and the BitBoard
+     * @param board The board
+     * @param what A description of the compared value
+     * @param expected The reference value
+     * @param actual The BitBoard value
+     */
+    private void reportMismatch(BitBoard board, String what, long expected, long actual) {
+        _mismatches++;
+
+        if (_mismatches <= 10)
+            System.out.printf("Mismatch in %s (black %016x, white %016x): expected %016x, got %016x%n",
+                    what, board.getBlack(), board.getWhite(), expected, actual);
+    }
+
+    /**
+     * Picks a random cell from a mask
+     * @param cells A non-empty mask
+     * @return The position of the picked cell
+     */
+    private int pickRandom(long cells) {
+        int index = _random.nextInt(Long.bitCount(cells));
+
+        for (int i = 0; i < index; i++)
+            cells &= cells - 1;
+
+        return Long.numberOfTrailingZeros(cells);
+    }
+}
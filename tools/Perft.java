@@ -0,0 +1,398 @@
+/*
+ * Enjun
+ *
+ * @version     1.0 Beta 1
+ * @author      Rocking Stars
+ * @copyright   2018, Enjun
+ *
+ * Copyright 2018 RockingStars
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rockingstar.modules.Reversi.tools;
+
+import com.rockingstar.engine.game.Player;
+import com.rockingstar.modules.Reversi.models.BitBoard;
+import com.rockingstar.modules.Reversi.models.ReversiModel;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Counts the leaf nodes of the game tree to a given depth (perft), as a correctness and speed check
+ * of the move generator. A pass is a move: when the color to move has no legal moves, the opponent
+ * moves at the next depth. A finished game is a leaf, even before the depth is reached. From the
+ * starting position the counts are compared with the known reference counts.
+ *
+ * There are three move generators that can be counted:
+ * - bitboard: BitBoard.getMoves and makeMove/unmakeMove, optionally on several threads
+ * - model: the mask API of ReversiModel (getPossibleMovesMask, getFlipMask, flipTiles)
+ * - array: the Player[][] code of ReversiModel, with a copy of the board for every move
+ *
+ * Usage: Perft [-threads n] [-mode bitboard|model|array] [-position cells color] depth
+ * The cells of a position are 64 characters in row order: b or x for black, w or o for white and
+ * - or . for an empty cell.
+ * @author Rocking Stars
+ * @since 1.0 Beta 1
+ */
+public class Perft {
+
+    /**
+     * The leaf counts from the starting position, indexed by depth
+     */
+    private static final long[] REFERENCE_COUNTS = {
+            1L, 4L, 12L, 56L, 244L, 1396L, 8200L, 55092L, 390216L, 3005288L, 24571284L, 212258800L,
+            1939886636L, 18429641748L
+    };
+
+    /**
+     * With several threads, the tree is split into tasks at this many plies from the root
+     */
+    private static final int SPLIT_DEPTH = 3;
+
+    /**
+     * The players of the model and array generators
+     */
+    private Player _black = new Player("Black", null, 'b');
+    private Player _white = new Player("White", null, 'w');
+
+    /**
+     * The model of the model and array generators
+     */
+    private ReversiModel _model = new ReversiModel();
+
+    public static void main(String[] args) throws InterruptedException, ExecutionException {
+        int threads = 1;
+        String mode = "bitboard";
+        BitBoard board = null;
+        char color = 'b';
+        int depth = -1;
+
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-threads") && i + 1 < args.length)
+                threads = Integer.parseInt(args[++i]);
+            else if (args[i].equals("-mode") && i + 1 < args.length)
+                mode = args[++i];
+            else if (args[i].equals("-position") && i + 2 < args.length) {
+                board = parsePosition(args[++i]);
+                color = args[++i].charAt(0);
+            }
+            else
+                depth = Integer.parseInt(args[i]);
+        }
+
+        if (depth < 0) {
+            System.out.println("Usage: Perft [-threads n] [-mode bitboard|model|array] [-position cells color] depth");
+            return;
+        }
+
+        boolean fromStart = board == null;
+
+        if (fromStart) {
+            board = new BitBoard();
+            board.setStartingPositions();
+        }
+
+        Perft perft = new Perft();
+        boolean failed = false;
+
+        System.out.printf("Mode %s, %d thread(s)%n", mode, threads);
+        System.out.println("depth            nodes    time (ms)     nodes/sec   check");
+
+        for (int d = 1; d <= depth; d++) {
+            long start = System.nanoTime();
+            long nodes;
+
+            switch (mode) {
+                case "bitboard":
+                    nodes = threads > 1 ? countParallel(board, color, d, threads) : count(board, color, d);
+                    break;
+                case "model":
+                    nodes = perft.countModel(board, color, d);
+                    break;
+                case "array":
+                    nodes = perft.countArray(board, color, d);
+                    break;
+                default:
+                    System.out.println("Unknown mode " + mode);
+                    return;
+            }
+
+            double time = (System.nanoTime() - start) / 1e6;
+            String check = "-";
+
+            if (fromStart && color == 'b' && d < REFERENCE_COUNTS.length) {
+                check = nodes == REFERENCE_COUNTS[d] ? "ok" : "MISMATCH (expected " + REFERENCE_COUNTS[d] + ")";
+                failed |= nodes != REFERENCE_COUNTS[d];
+            }
+
+            System.out.printf("%5d %16d %12.1f %13.0f   %s%n", d, nodes, time, nodes / Math.max(time / 1000, 1e-9), check);
+        }
+
+        if (failed)
+            System.exit(1);
+    }
+
+    /**
+     * Counts the leaves with the bitboard move generator
+     * @param board The board. It is changed during the count, but restored afterwards.
+     * @param color The color to move
+     * @param depth The depth
+     * @return The number of leaves
+     */
+    public static long count(BitBoard board, char color, int depth) {
+        if (depth == 0)
+            return 1;
+
+        char opponent = color == 'b' ? 'w' : 'b';
+        long moves = board.getMoves(color);
+
+        if (moves == 0)
+            return board.getMoves(opponent) == 0 ? 1 : count(board, opponent, depth - 1);
+
+        // The last ply only needs the number of moves
+        if (depth == 1)
+            return Long.bitCount(moves);
+
+        long nodes = 0;
+
+        for (; moves != 0; moves &= moves - 1) {
+            int position = Long.numberOfTrailingZeros(moves);
+            long undo = board.makeMove(position, color);
+
+            nodes += count(board, opponent, depth - 1);
+            board.unmakeMove(position, undo, color);
+        }
+
+        return nodes;
+    }
+
+    /**
+     * Counts the leaves with the bitboard move generator on several threads. The positions a few
+     * plies from the root are counted as separate tasks.
+     * @param board The board, which isn't changed
+     * @param color The color to move
+     * @param depth The depth
+     * @param threads The number of threads
+     * @return The number of leaves
+     * @throws InterruptedException If the calling thread is interrupted while waiting
+     * @throws ExecutionException If a task failed
+     */
+    public static long countParallel(BitBoard board, char color, int depth, int threads)
+            throws InterruptedException, ExecutionException {
+        int split = Math.min(SPLIT_DEPTH, depth);
+        ArrayList<BitBoard> boards = new ArrayList<>();
+        ArrayList<Character> colors = new ArrayList<>();
+        long nodes = collect(board.copy(), color, split, boards, colors);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+            ArrayList<Future<Long>> tasks = new ArrayList<>();
+
+            for (int i = 0; i < boards.size(); i++) {
+                BitBoard task = boards.get(i);
+                char taskColor = colors.get(i);
+
+                tasks.add(executor.submit(() -> count(task, taskColor, depth - split)));
+            }
+
+            for (Future<Long> task : tasks)
+                nodes += task.get();
+        }
+        finally {
+            executor.shutdown();
+        }
+
+        return nodes;
+    }
+
+    /**
+     * Collects the positions at a number of plies from the root
+     * @param board The board
+     * @param color The color to move
+     * @param depth The remaining number of plies
+     * @param boards The list the positions are added to
+     * @param colors The list the colors to move are added to
+     * @return The number of finished games found before the depth, which are leaves themselves
+     */
+    private static long collect(BitBoard board, char color, int depth, ArrayList<BitBoard> boards,
+                                ArrayList<Character> colors) {
+        if (depth == 0) {
+            boards.add(board.copy());
+            colors.add(color);
+            return 0;
+        }
+
+        char opponent = color == 'b' ? 'w' : 'b';
+        long moves = board.getMoves(color);
+
+        if (moves == 0)
+            return board.getMoves(opponent) == 0 ? 1 : collect(board, opponent, depth - 1, boards, colors);
+
+        long leaves = 0;
+
+        for (; moves != 0; moves &= moves - 1) {
+            int position = Long.numberOfTrailingZeros(moves);
+            long undo = board.makeMove(position, color);
+
+            leaves += collect(board, opponent, depth - 1, boards, colors);
+            board.unmakeMove(position, undo, color);
+        }
+
+        return leaves;
+    }
+
+    /**
+     * Counts the leaves with the mask API of ReversiModel
+     * @param board The position
+     * @param color The color to move
+     * @param depth The depth
+     * @return The number of leaves
+     */
+    public long countModel(BitBoard board, char color, int depth) {
+        load(board);
+
+        return countModel(color == 'b' ? _black : _white, color == 'b' ? _white : _black, depth);
+    }
+
+    /**
+     * Counts the leaves with the mask API of ReversiModel, taking back every move by flipping the
+     * discs back and clearing the cell
+     * @param player The player to move
+     * @param opponent The opponent
+     * @param depth The depth
+     * @return The number of leaves
+     */
+    private long countModel(Player player, Player opponent, int depth) {
+        if (depth == 0)
+            return 1;
+
+        long moves = _model.getPossibleMovesMask(player);
+
+        if (moves == 0)
+            return _model.getPossibleMovesMask(opponent) == 0 ? 1 : countModel(opponent, player, depth - 1);
+
+        long nodes = 0;
+
+        for (; moves != 0; moves &= moves - 1) {
+            int position = Long.numberOfTrailingZeros(moves);
+            int x = position % 8;
+            int y = position / 8;
+            long flips = _model.getFlipMask(x, y, player);
+
+            _model.flipTiles(flips, player);
+            _model.setPlayerAtPosition(player, x, y);
+
+            nodes += countModel(opponent, player, depth - 1);
+
+            _model.flipTiles(flips, opponent);
+            _model.setPlayerAtPosition(null, x, y);
+        }
+
+        return nodes;
+    }
+
+    /**
+     * Counts the leaves with the Player[][] code of ReversiModel
+     * @param board The position
+     * @param color The color to move
+     * @param depth The depth
+     * @return The number of leaves
+     */
+    public long countArray(BitBoard board, char color, int depth) {
+        load(board);
+
+        return countArray(_model.cloneBoard(_model.getBoard()), color == 'b' ? _black : _white,
+                color == 'b' ? _white : _black, depth);
+    }
+
+    /**
+     * Counts the leaves with the Player[][] code of ReversiModel, copying the board for every move
+     * @param board The board
+     * @param player The player to move
+     * @param opponent The opponent
+     * @param depth The depth
+     * @return The number of leaves
+     */
+    private long countArray(Player[][] board, Player player, Player opponent, int depth) {
+        if (depth == 0)
+            return 1;
+
+        ArrayList<Integer> moves = _model.getPossibleMoves(player, board);
+
+        if (moves.isEmpty())
+            return _model.getPossibleMoves(opponent, board).isEmpty() ? 1 : countArray(board, opponent, player, depth - 1);
+
+        long nodes = 0;
+
+        for (int position : moves) {
+            int x = position % 8;
+            int y = position / 8;
+            Player[][] child = _model.cloneBoard(board);
+            LinkedList<Integer> flips = _model.getFlippableTiles(x, y, player, child);
+
+            _model.flipTiles(flips, player, child);
+            child[x][y] = player;
+
+            nodes += countArray(child, opponent, player, depth - 1);
+        }
+
+        return nodes;
+    }
+
+    /**
+     * Loads a position into the model
+     * @param board The position
+     */
+    private void load(BitBoard board) {
+        _model.createCells();
+
+        for (int position = 0; position < 64; position++) {
+            char color = board.getColor(position);
+
+            if (color != 0)
+                _model.setPlayerAtPosition(color == 'b' ? _black : _white, position % 8, position / 8);
+        }
+    }
+
+    /**
+     * Parses a position
+     * @param cells 64 characters in row order: b or x for black, w or o for white, - or . for empty
+     * @return The position
+     */
+    private static BitBoard parsePosition(String cells) {
+        if (cells.length() != 64)
+            throw new IllegalArgumentException("A position has 64 cells, not " + cells.length());
+
+        BitBoard board = new BitBoard();
+
+        for (int position = 0; position < 64; position++) {
+            char cell = Character.toLowerCase(cells.charAt(position));
+
+            if (cell == 'b' || cell == 'x')
+                board.setColor(position, 'b');
+            else if (cell == 'w' || cell == 'o')
+                board.setColor(position, 'w');
+            else if (cell != '-' && cell != '.')
+                throw new IllegalArgumentException("Unknown cell '" + cell + "'");
+        }
+
+        return board;
+    }
+}
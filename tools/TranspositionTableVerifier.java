@@ -0,0 +1,119 @@
+/*
+ * Enjun
+ *
+ * @version     1.0 Beta 1
+ * @author      Rocking Stars
+ * @copyright   2018, Enjun
+ *
+ * Copyright 2018 RockingStars
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rockingstar.modules.Reversi.tools;
+
+import com.rockingstar.modules.Reversi.ai.ParallelSearch;
+import com.rockingstar.modules.Reversi.ai.SimpleEvaluator;
+import com.rockingstar.modules.Reversi.ai.TranspositionTable;
+import com.rockingstar.modules.Reversi.models.BitBoard;
+
+/**
+ * Checks that a parallel search starts exactly one table generation, and that the depth preferred
+ * replacement keeps the deepest entry of the current generation when a shallower result of another
+ * position lands on the same slot, as a helper storing during the same search would.
+ *
+ * Usage: TranspositionTableVerifier [threads] [depth]
+ * @author Rocking Stars
+ * @since 1.0 Beta 1
+ */
+public class TranspositionTableVerifier {
+
+    /**
+     * The size of the table in megabytes
+     */
+    private static final int TABLE_SIZE = 16;
+
+    /**
+     * Number of checks and failed checks
+     */
+    private int _checks;
+    private int _failures;
+
+    public static void main(String[] args) {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+
+        TranspositionTableVerifier verifier = new TranspositionTableVerifier();
+        verifier.run(threads, depth);
+
+        System.out.printf("Ran %d checks with %d threads at depth %d: %d failures%n", verifier._checks, threads, depth,
+                verifier._failures);
+
+        if (verifier._failures > 0)
+            System.exit(1);
+    }
+
+    /**
+     * Searches the starting position and checks the entry of the root
+     * @param threads The number of search threads
+     * @param depth The depth of the search
+     */
+    public void run(int threads, int depth) {
+        TranspositionTable table = new TranspositionTable(TABLE_SIZE, TranspositionTable.ReplacementPolicy.DEPTH_PREFERRED);
+        ParallelSearch search = new ParallelSearch(SimpleEvaluator::new, table, threads);
+
+        BitBoard board = new BitBoard();
+        board.setStartingPositions();
+        long key = board.getHash(); // black to move
+
+        try {
+            int generation = table.getCurrentGeneration();
+            search.findMove(board, 'b', Long.MAX_VALUE / 2, depth);
+
+            check("one generation per move", (generation + 1) & 0xff, table.getCurrentGeneration());
+
+            long data = table.probe(key);
+            check("root entry found", 1, data == TranspositionTable.NOT_FOUND ? 0 : 1);
+            check("root entry generation", table.getCurrentGeneration(), TranspositionTable.getGeneration(data));
+
+            int rootDepth = TranspositionTable.getDepth(data);
+            check("root entry depth", 1, rootDepth >= depth ? 1 : 0);
+
+            // Same slot, different position: the index only uses the low bits of the key
+            long collision = key ^ (1L << 63);
+            table.store(collision, rootDepth - 1, TranspositionTable.EXACT, 0, TranspositionTable.NO_MOVE);
+
+            check("root entry survives a shallower store", rootDepth,
+                    TranspositionTable.getDepth(table.probe(key)));
+        }
+        finally {
+            search.shutdown();
+        }
+    }
+
+    /**
+     * Compares a value with the expected value
+     * @param what A description of the compared value
+     * @param expected The expected value
+     * @param actual The actual value
+     */
+    private void check(String what, long expected, long actual) {
+        _checks++;
+
+        if (expected == actual)
+            return;
+
+        _failures++;
+        System.out.printf("Failed: %s: expected %d, got %d%n", what, expected, actual);
+    }
+}
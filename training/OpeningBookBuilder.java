@@ -0,0 +1,374 @@
+/*
+ * Enjun
+ *
+ * @version     1.0 Beta 1
+ * @author      Rocking Stars
+ * @copyright   2018, Enjun
+ *
+ * Copyright 2018 RockingStars
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rockingstar.modules.Reversi.training;
+
+import com.rockingstar.modules.Reversi.ai.OpeningBook;
+import com.rockingstar.modules.Reversi.models.BitBoard;
+import com.rockingstar.modules.Reversi.models.GameRecord;
+import com.rockingstar.modules.Reversi.models.Symmetry;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Builds an opening book from played games. For every position in the first plies of the games,
+ * the moves that were played are counted together with the final results of their games, and the
+ * move with the best average result for the color that played it goes into the book.
+ *
+ * The games are read from self-play training data (the moves are recovered from consecutive
+ * positions of a game) or from transcript files (.txt), with one game per line written as
+ * coordinates like f5d6c3d3. Passes are not written in transcripts. Game records of played games
+ * (.rvg) are read as well.
+ *
+ * Usage: OpeningBookBuilder output maxPly minGames input...
+ * @author Rocking Stars
+ * @since 1.0 Beta 1
+ */
+public class OpeningBookBuilder {
+
+    /**
+     * Moves are only counted in this many first plies of a game
+     */
+    private int _maxPly;
+
+    /**
+     * Moves that were played in fewer games don't go into the book
+     */
+    private int _minGames;
+
+    /**
+     * The statistics of every normalized position, by key
+     */
+    private HashMap<Long, PositionStats> _positions = new HashMap<>();
+
+    /**
+     * The number of games that were added
+     */
+    private long _games;
+
+    /**
+     * The positions and moves of the game that is being read
+     */
+    private long[] _blacks = new long[128];
+    private long[] _whites = new long[128];
+    private char[] _colors = new char[128];
+    private int[] _moves = new int[128];
+
+    /**
+     * OpeningBookBuilder constructor
+     * @param maxPly Moves are only counted in this many first plies of a game
+     * @param minGames Moves that were played in fewer games don't go into the book
+     */
+    public OpeningBookBuilder(int maxPly, int minGames) {
+        _maxPly = maxPly;
+        _minGames = minGames;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 4) {
+            System.out.println("Usage: OpeningBookBuilder output maxPly minGames input...");
+            return;
+        }
+
+        OpeningBookBuilder builder = new OpeningBookBuilder(Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+
+        for (int i = 3; i < args.length; i++) {
+            if (args[i].endsWith(".txt"))
+                builder.addTranscripts(args[i]);
+            else if (args[i].endsWith(".rvg"))
+                builder.addGameRecords(args[i]);
+            else
+                builder.addTrainingData(args[i]);
+        }
+
+        try (OutputStream output = new FileOutputStream(args[0])) {
+            long entries = builder.write(output);
+            System.out.printf("Added %d games, %d positions, wrote %d entries%n", builder._games, builder._positions.size(), entries);
+        }
+    }
+
+    /**
+     * Adds the games of a transcript file. Games with an illegal move are added up to that move.
+     * @param path The path of the file
+     * @throws IOException If the file can't be read
+     */
+    public void addTranscripts(String path) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new FileReader(path))) {
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                line = line.trim().toLowerCase();
+
+                if (line.isEmpty() || line.startsWith("#"))
+                    continue;
+
+                BitBoard board = new BitBoard();
+                board.setStartingPositions();
+                char color = 'b';
+                int plies = 0;
+
+                for (int i = 0; i + 1 < line.length() && plies < _moves.length; i += 2) {
+                    int x = line.charAt(i) - 'a';
+                    int y = line.charAt(i + 1) - '1';
+
+                    if (board.getMoves(color) == 0)
+                        color = color == 'b' ? 'w' : 'b';
+
+                    if (x < 0 || x > 7 || y < 0 || y > 7 || (board.getMoves(color) & 1L << (y * 8 + x)) == 0)
+                        break;
+
+                    _blacks[plies] = board.getBlack();
+                    _whites[plies] = board.getWhite();
+                    _colors[plies] = color;
+                    _moves[plies++] = y * 8 + x;
+
+                    board.makeMove(y * 8 + x, color);
+                    color = color == 'b' ? 'w' : 'b';
+                }
+
+                addGame(plies, board.getCount('b') - board.getCount('w'));
+            }
+        }
+    }
+
+    /**
+     * Adds the games of a game record file. Games with an illegal move are added up to that move.
+     * @param path The path of the file
+     * @throws IOException If the file can't be read
+     */
+    public void addGameRecords(String path) throws IOException {
+        try (GameRecord.Reader reader = new GameRecord.Reader(path)) {
+            BitBoard board = new BitBoard();
+
+            while (reader.next()) {
+                GameRecord record = reader.getRecord();
+                board.setStartingPositions();
+                char color = 'b';
+                int plies = 0;
+
+                for (int i = 0; i < record.getMoveCount() && plies < _moves.length; i++) {
+                    int move = record.getMove(i);
+
+                    _blacks[plies] = board.getBlack();
+                    _whites[plies] = board.getWhite();
+                    _colors[plies] = color;
+                    _moves[plies] = move;
+
+                    color = GameRecord.apply(board, move, color);
+
+                    if (color == 0)
+                        break;
+
+                    // A pass is only a change of color in the book
+                    if (move != GameRecord.PASS)
+                        plies++;
+                }
+
+                addGame(plies, record.getCount('b') - record.getCount('w'));
+            }
+        }
+    }
+
+    /**
+     * Adds the games of a training data file. The records of a game are consecutive, so a game
+     * continues as long as every record follows from the previous one by a legal move.
+     * @param path The path of the file
+     * @throws IOException If the file can't be read
+     */
+    public void addTrainingData(String path) throws IOException {
+        try (TrainingData.Reader reader = new TrainingData.Reader(path)) {
+            int plies = 0;
+            int result = 0;
+            BitBoard board = new BitBoard();
+
+            while (reader.next()) {
+                long black = reader.getBlack();
+                long white = reader.getWhite();
+                int move = plies == 0 ? -1 : findMove(board, _colors[plies - 1], black, white);
+
+                if (plies > 0 && move >= 0 && plies < _moves.length) {
+                    _moves[plies - 1] = move;
+                }
+                else {
+                    addGame(plies - 1, result);
+                    plies = 0;
+                }
+
+                // Games that don't start at the starting position can't be placed in the book
+                if (plies == 0 && Long.bitCount(black | white) != 4)
+                    continue;
+
+                board = new BitBoard(black, white);
+                result = reader.getResult();
+                _blacks[plies] = black;
+                _whites[plies] = white;
+                _colors[plies++] = reader.getColor();
+            }
+
+            addGame(plies - 1, result);
+        }
+    }
+
+    /**
+     * Finds the move that leads from one position to the next
+     * @param board The position
+     * @param color The color to move
+     * @param black The cells occupied by black in the next position
+     * @param white The cells occupied by white in the next position
+     * @return The position of the move, or -1 if there is none
+     */
+    private static int findMove(BitBoard board, char color, long black, long white) {
+        long placed = (black | white) & board.getEmpty();
+
+        if (Long.bitCount(placed) != 1 || (board.getMoves(color) & placed) == 0)
+            return -1;
+
+        int move = Long.numberOfTrailingZeros(placed);
+        BitBoard next = board.copy();
+        next.makeMove(move, color);
+
+        return next.getBlack() == black && next.getWhite() == white ? move : -1;
+    }
+
+    /**
+     * Adds the moves of the game that was read
+     * @param plies The number of moves
+     * @param result The final disc differential, from black's perspective
+     */
+    private void addGame(int plies, int result) {
+        if (plies <= 0)
+            return;
+
+        _games++;
+
+        for (int ply = 0; ply < Math.min(plies, _maxPly); ply++) {
+            char color = _colors[ply];
+            int symmetry = Symmetry.getCanonicalSymmetry(_blacks[ply], _whites[ply]);
+            long key = OpeningBook.getKey(Symmetry.transform(_blacks[ply], symmetry),
+                    Symmetry.transform(_whites[ply], symmetry), color);
+
+            _positions.computeIfAbsent(key, k -> new PositionStats())
+                    .add(Symmetry.transformPosition(_moves[ply], symmetry), color == 'b' ? result : -result);
+        }
+    }
+
+    /**
+     * Writes the book
+     * @param output The stream to write to. It is flushed, but not closed.
+     * @return The number of entries
+     * @throws IOException If the book can't be written
+     */
+    public long write(OutputStream output) throws IOException {
+        long[] keys = new long[_positions.size()];
+        int[] moves = new int[keys.length];
+        int count = 0;
+
+        for (Long key : _positions.keySet())
+            if (_positions.get(key).getBestMove(_minGames) >= 0)
+                keys[count++] = key;
+
+        keys = Arrays.copyOf(keys, count);
+        Arrays.sort(keys);
+
+        BufferedOutputStream buffered = new BufferedOutputStream(output);
+        ByteBuffer entry = ByteBuffer.allocate(OpeningBook.ENTRY_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+        entry.putInt(OpeningBook.MAGIC).putInt(OpeningBook.VERSION).putLong(count);
+        buffered.write(entry.array());
+
+        for (long key : keys) {
+            PositionStats stats = _positions.get(key);
+            int move = stats.getBestMove(_minGames);
+
+            entry.clear();
+            entry.putLong(key)
+                    .putShort((short) stats._moves[move])
+                    .putShort((short) Math.min(0xffff, stats._games[move]))
+                    .putInt((int) (stats._scores[move] * 100 / stats._games[move]));
+            buffered.write(entry.array());
+        }
+
+        buffered.flush();
+
+        return count;
+    }
+
+    /**
+     * The moves that were played in a position, with the number of games and the sum of the results
+     */
+    private static class PositionStats {
+
+        private int[] _moves = new int[4];
+        private int[] _games = new int[4];
+        private long[] _scores = new long[4];
+        private int _count;
+
+        /**
+         * Adds a played move
+         * @param move The position of the move
+         * @param score The final disc differential for the color that played it
+         */
+        void add(int move, int score) {
+            int index = 0;
+
+            while (index < _count && _moves[index] != move)
+                index++;
+
+            if (index == _count) {
+                if (_count == _moves.length) {
+                    _moves = Arrays.copyOf(_moves, _count * 2);
+                    _games = Arrays.copyOf(_games, _count * 2);
+                    _scores = Arrays.copyOf(_scores, _count * 2);
+                }
+
+                _moves[_count++] = move;
+            }
+
+            _games[index]++;
+            _scores[index] += score;
+        }
+
+        /**
+         * Returns the move with the best average result
+         * @param minGames Moves that were played in fewer games are ignored
+         * @return The index of the move, or -1 if no move was played often enough
+         */
+        int getBestMove(int minGames) {
+            int best = -1;
+
+            for (int i = 0; i < _count; i++)
+                if (_games[i] >= minGames && (best < 0 || _scores[i] * _games[best] > _scores[best] * _games[i]))
+                    best = i;
+
+            return best;
+        }
+    }
+}
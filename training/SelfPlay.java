@@ -0,0 +1,246 @@
+/*
+ * Enjun
+ *
+ * @version     1.0 Beta 1
+ * @author      Rocking Stars
+ * @copyright   2018, Enjun
+ *
+ * Copyright 2018 RockingStars
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rockingstar.modules.Reversi.training;
+
+import com.rockingstar.modules.Reversi.ai.PatternEvaluator;
+import com.rockingstar.modules.Reversi.ai.PatternWeights;
+import com.rockingstar.modules.Reversi.ai.SearchEngine;
+import com.rockingstar.modules.Reversi.ai.TranspositionTable;
+import com.rockingstar.modules.Reversi.models.BitBoard;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Plays games against itself without a GUI or a server connection and writes every position with
+ * the final result of its game as training data. Every thread runs its own fixed-depth search; the
+ * first moves of each game and a small share of the later moves are random, so the games differ.
+ *
+ * Usage: SelfPlay games threads depth output [weights]
+ * @author Rocking Stars
+ * @since 1.0 Beta 1
+ */
+public class SelfPlay {
+
+    /**
+     * The number of random moves at the start of every game
+     */
+    private static final int RANDOM_OPENING_MOVES = 8;
+
+    /**
+     * The chance that a later move is random
+     */
+    private static final double RANDOM_MOVE_RATE = 0.05;
+
+    /**
+     * The memory budget of the transposition table of each thread, in megabytes
+     */
+    private static final int TABLE_SIZE = 16;
+
+    /**
+     * Progress is printed every this many games
+     */
+    private static final int REPORT_INTERVAL = 1000;
+
+    /**
+     * The weights used by the players
+     */
+    private PatternWeights _weights;
+
+    /**
+     * The search depth of the players
+     */
+    private int _depth;
+
+    /**
+     * The output
+     */
+    private TrainingData.Writer _writer;
+
+    /**
+     * The number of games that still have to be started, and the number of finished games
+     */
+    private AtomicInteger _gamesLeft;
+    private AtomicInteger _gamesPlayed = new AtomicInteger();
+
+    /**
+     * When the run started, in ms since the epoch
+     */
+    private long _start;
+
+    /**
+     * SelfPlay constructor
+     * @param weights The weights used by the players
+     * @param depth The search depth of the players
+     * @param writer The output
+     */
+    public SelfPlay(PatternWeights weights, int depth, TrainingData.Writer writer) {
+        _weights = weights;
+        _depth = depth;
+        _writer = writer;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 4) {
+            System.out.println("Usage: SelfPlay games threads depth output [weights]");
+            return;
+        }
+
+        int games = Integer.parseInt(args[0]);
+        int threads = Integer.parseInt(args[1]);
+        int depth = Integer.parseInt(args[2]);
+        PatternWeights weights = PatternWeights.loadDefault();
+
+        if (args.length > 4) {
+            try (InputStream input = new FileInputStream(args[4])) {
+                weights = PatternWeights.load(input);
+            }
+        }
+
+        try (TrainingData.Writer writer = new TrainingData.Writer(args[3])) {
+            SelfPlay selfPlay = new SelfPlay(weights, depth, writer);
+            selfPlay.run(games, threads);
+
+            double seconds = (System.currentTimeMillis() - selfPlay._start) / 1000.0;
+            System.out.printf("Played %d games (%d positions) in %.1f s: %.1f games/sec%n",
+                    games, writer.getRecords(), seconds, games / seconds);
+        }
+    }
+
+    /**
+     * Plays games on a number of threads and waits for them to finish
+     * @param games The number of games
+     * @param threads The number of threads
+     * @throws InterruptedException If the calling thread is interrupted while waiting
+     */
+    public void run(int games, int threads) throws InterruptedException {
+        _gamesLeft = new AtomicInteger(games);
+        _start = System.currentTimeMillis();
+
+        Thread[] workers = new Thread[threads];
+
+        for (int i = 0; i < threads; i++) {
+            long seed = _start * 31 + i;
+            workers[i] = new Thread(() -> playGames(seed), "Reversi self-play " + i);
+            workers[i].start();
+        }
+
+        for (Thread worker : workers)
+            worker.join();
+    }
+
+    /**
+     * Plays games until there are none left
+     * @param seed The seed of the random moves of this thread
+     */
+    private void playGames(long seed) {
+        SearchEngine engine = new SearchEngine(new PatternEvaluator(_weights), new TranspositionTable(TABLE_SIZE));
+        Random random = new Random(seed);
+        long[] blacks = new long[128];
+        long[] whites = new long[128];
+        char[] colors = new char[128];
+
+        while (_gamesLeft.getAndDecrement() > 0) {
+            BitBoard board = new BitBoard();
+            board.setStartingPositions();
+            char color = 'b';
+            int positions = 0;
+
+            while (true) {
+                long moves = board.getMoves(color);
+
+                if (moves == 0) {
+                    color = color == 'b' ? 'w' : 'b';
+
+                    if (board.getMoves(color) == 0)
+                        break;
+
+                    continue;
+                }
+
+                blacks[positions] = board.getBlack();
+                whites[positions] = board.getWhite();
+                colors[positions++] = color;
+
+                int move;
+
+                if (positions <= RANDOM_OPENING_MOVES || random.nextDouble() < RANDOM_MOVE_RATE)
+                    move = pickRandom(moves, random);
+                else
+                    move = engine.findMove(board, color, Long.MAX_VALUE / 2, _depth);
+
+                board.makeMove(move, color);
+                color = color == 'b' ? 'w' : 'b';
+            }
+
+            int result = getResult(board);
+
+            synchronized (_writer) {
+                try {
+                    for (int i = 0; i < positions; i++)
+                        _writer.write(blacks[i], whites[i], colors[i], result);
+                }
+                catch (IOException e) {
+                    throw new RuntimeException("Writing training data", e);
+                }
+            }
+
+            int played = _gamesPlayed.incrementAndGet();
+
+            if (played % REPORT_INTERVAL == 0) {
+                double seconds = (System.currentTimeMillis() - _start) / 1000.0;
+                System.out.printf("%d games, %.1f games/sec%n", played, played / seconds);
+            }
+        }
+    }
+
+    /**
+     * Returns the final disc differential of a finished game, where empty cells go to the winner
+     * @param board The board
+     * @return The disc differential, from black's perspective
+     */
+    private static int getResult(BitBoard board) {
+        int difference = board.getCount('b') - board.getCount('w');
+        int empties = Long.bitCount(board.getEmpty());
+
+        return difference > 0 ? difference + empties : difference < 0 ? difference - empties : 0;
+    }
+
+    /**
+     * Picks a random cell from a mask
+     * @param cells A non-empty mask
+     * @param random The random number generator
+     * @return The position of the picked cell
+     */
+    private static int pickRandom(long cells, Random random) {
+        int index = random.nextInt(Long.bitCount(cells));
+
+        for (int i = 0; i < index; i++)
+            cells &= cells - 1;
+
+        return Long.numberOfTrailingZeros(cells);
+    }
+}
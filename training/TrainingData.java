@@ -0,0 +1,214 @@
+/*
+ * Enjun
+ *
+ * @version     1.0 Beta 1
+ * @author      Rocking Stars
+ * @copyright   2018, Enjun
+ *
+ * Copyright 2018 RockingStars
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rockingstar.modules.Reversi.training;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Reads and writes training positions in a compact binary format. A file starts with a magic number
+ * and a version, followed by records of 18 bytes: the black cells (8 bytes), the white cells
+ * (8 bytes), the color to move (1 byte: 0 for black, 1 for white) and the final disc differential
+ * of the game from black's perspective (1 signed byte).
+ * @author Rocking Stars
+ * @since 1.0 Beta 1
+ */
+public class TrainingData {
+
+    /**
+     * The magic number at the start of a file ("RVTD")
+     */
+    private static final int MAGIC = 0x52565444;
+
+    /**
+     * The version of the format
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The size of a record in bytes
+     */
+    public static final int RECORD_SIZE = 18;
+
+    private TrainingData() {
+    }
+
+    /**
+     * Writes records to a file
+     */
+    public static class Writer implements Closeable {
+
+        /**
+         * The file
+         */
+        private DataOutputStream _output;
+
+        /**
+         * The number of written records
+         */
+        private long _records;
+
+        /**
+         * Writer constructor, creates (or truncates) the file
+         * @param path The path of the file
+         * @throws IOException If the file can't be created
+         */
+        public Writer(String path) throws IOException {
+            _output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path), 1 << 16));
+            _output.writeInt(MAGIC);
+            _output.writeInt(VERSION);
+        }
+
+        /**
+         * Writes a record
+         * @param black The cells occupied by black
+         * @param white The cells occupied by white
+         * @param color The color to move
+         * @param result The final disc differential, from black's perspective
+         * @throws IOException If the record can't be written
+         */
+        public void write(long black, long white, char color, int result) throws IOException {
+            _output.writeLong(black);
+            _output.writeLong(white);
+            _output.writeByte(color == 'b' ? 0 : 1);
+            _output.writeByte(result);
+            _records++;
+        }
+
+        /**
+         * Returns the number of written records
+         * @return The number of records
+         */
+        public long getRecords() {
+            return _records;
+        }
+
+        /**
+         * Closes the file
+         * @throws IOException If the file can't be closed
+         */
+        @Override
+        public void close() throws IOException {
+            _output.close();
+        }
+    }
+
+    /**
+     * Reads the records of a file one by one, so files of any size take constant memory
+     */
+    public static class Reader implements Closeable {
+
+        /**
+         * The file
+         */
+        private DataInputStream _input;
+
+        /**
+         * The current record
+         */
+        private long _black;
+        private long _white;
+        private char _color;
+        private int _result;
+
+        /**
+         * Reader constructor
+         * @param path The path of the file
+         * @throws IOException If the file can't be opened or isn't a training data file
+         */
+        public Reader(String path) throws IOException {
+            _input = new DataInputStream(new BufferedInputStream(new FileInputStream(path), 1 << 16));
+
+            if (_input.readInt() != MAGIC || _input.readInt() != VERSION) {
+                _input.close();
+                throw new IOException(path + " is not a training data file");
+            }
+        }
+
+        /**
+         * Reads the next record
+         * @return Whether or not a record was read, false at the end of the file
+         * @throws IOException If the file can't be read
+         */
+        public boolean next() throws IOException {
+            try {
+                _black = _input.readLong();
+                _white = _input.readLong();
+                _color = _input.readByte() == 0 ? 'b' : 'w';
+                _result = _input.readByte();
+                return true;
+            }
+            catch (EOFException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Returns a value of the current record
+         * @return The cells occupied by black
+         */
+        public long getBlack() {
+            return _black;
+        }
+
+        /**
+         * Returns a value of the current record
+         * @return The cells occupied by white
+         */
+        public long getWhite() {
+            return _white;
+        }
+
+        /**
+         * Returns a value of the current record
+         * @return The color to move
+         */
+        public char getColor() {
+            return _color;
+        }
+
+        /**
+         * Returns a value of the current record
+         * @return The final disc differential, from black's perspective
+         */
+        public int getResult() {
+            return _result;
+        }
+
+        /**
+         * Closes the file
+         * @throws IOException If the file can't be closed
+         */
+        @Override
+        public void close() throws IOException {
+            _input.close();
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Enjun
+ *
+ * @version     1.0 Beta 1
+ * @author      Rocking Stars
+ * @copyright   2018, Enjun
+ *
+ * Copyright 2018 RockingStars
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rockingstar.modules.Reversi.training;
+
+import com.rockingstar.modules.Reversi.ai.PatternEvaluator;
+import com.rockingstar.modules.Reversi.ai.PatternWeights;
+import com.rockingstar.modules.Reversi.models.BitBoard;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Fits pattern weights to training data with stochastic gradient descent on the squared error
+ * between the evaluation and the final disc differential (in hundredths of a disc, like the
+ * evaluation). The data is streamed from disk in every epoch, so its size isn't limited by memory.
+ *
+ * Usage: WeightFitter data output [epochs] [learningRate]
+ * @author Rocking Stars
+ * @since 1.0 Beta 1
+ */
+public class WeightFitter {
+
+    /**
+     * The largest weight that fits in the weight tables
+     */
+    private static final float MAX_WEIGHT = Short.MAX_VALUE;
+
+    /**
+     * The weights of every phase, pattern type and code
+     */
+    private float[][][] _tables = new float[PatternEvaluator.PHASE_COUNT][PatternEvaluator.TYPE_COUNT][];
+
+    /**
+     * The mobility and parity weight of every phase
+     */
+    private float[] _mobility = new float[PatternEvaluator.PHASE_COUNT];
+    private float[] _parity = new float[PatternEvaluator.PHASE_COUNT];
+
+    /**
+     * The codes of the current position
+     */
+    private int[] _codes = new int[PatternEvaluator.INSTANCE_COUNT];
+
+    /**
+     * WeightFitter constructor, starting with all weights at zero
+     */
+    public WeightFitter() {
+        for (int phase = 0; phase < PatternEvaluator.PHASE_COUNT; phase++)
+            for (int type = 0; type < PatternEvaluator.TYPE_COUNT; type++)
+                _tables[phase][type] = new float[PatternEvaluator.getCodeCount(type)];
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: WeightFitter data output [epochs] [learningRate]");
+            return;
+        }
+
+        int epochs = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        float learningRate = args.length > 3 ? Float.parseFloat(args[3]) : 0.002f;
+
+        WeightFitter fitter = new WeightFitter();
+
+        for (int epoch = 1; epoch <= epochs; epoch++) {
+            long start = System.currentTimeMillis();
+            double error = fitter.runEpoch(args[0], learningRate);
+
+            System.out.printf("Epoch %d: mean squared error %.2f discs^2, %d ms%n", epoch, error / 10000,
+                    System.currentTimeMillis() - start);
+        }
+
+        try (OutputStream output = new FileOutputStream(args[1])) {
+            fitter.toWeights().save(output);
+        }
+    }
+
+    /**
+     * Runs one pass of stochastic gradient descent over a data file
+     * @param path The path of the training data
+     * @param learningRate The learning rate
+     * @return The mean squared error of the predictions during the pass
+     * @throws IOException If the data can't be read
+     */
+    public double runEpoch(String path, float learningRate) throws IOException {
+        double squaredError = 0;
+        long records = 0;
+
+        try (TrainingData.Reader reader = new TrainingData.Reader(path)) {
+            while (reader.next()) {
+                squaredError += train(reader.getBlack(), reader.getWhite(), reader.getColor(), reader.getResult(), learningRate);
+                records++;
+            }
+        }
+
+        return records == 0 ? 0 : squaredError / records;
+    }
+
+    /**
+     * Moves the weights of one position towards its result
+     * @param black The cells occupied by black
+     * @param white The cells occupied by white
+     * @param color The color to move
+     * @param result The final disc differential, from black's perspective
+     * @param learningRate The learning rate
+     * @return The squared error of the prediction before the update
+     */
+    private double train(long black, long white, char color, int result, float learningRate) {
+        int empties = Long.bitCount(~(black | white));
+        int phase = PatternEvaluator.getPhase(empties);
+        int mobility = Long.bitCount(BitBoard.getMoves(black, white)) - Long.bitCount(BitBoard.getMoves(white, black));
+
+        // The evaluator gives the parity bonus to the color to move; from black's perspective that is -1 for white
+        int parity = (empties & 1) == 0 ? 0 : color == 'b' ? 1 : -1;
+
+        PatternEvaluator.computeCodes(black, white, _codes);
+
+        float prediction = _mobility[phase] * mobility + _parity[phase] * parity;
+
+        for (int instance = 0; instance < PatternEvaluator.INSTANCE_COUNT; instance++)
+            prediction += _tables[phase][PatternEvaluator.getInstanceType(instance)][_codes[instance]];
+
+        float error = result * 100 - prediction;
+        float step = learningRate * error;
+
+        for (int instance = 0; instance < PatternEvaluator.INSTANCE_COUNT; instance++)
+            _tables[phase][PatternEvaluator.getInstanceType(instance)][_codes[instance]] += step;
+
+        // Mobility and parity occur in every position, so they get a smaller step
+        _mobility[phase] += step * mobility / PatternEvaluator.INSTANCE_COUNT;
+        _parity[phase] += step * parity / PatternEvaluator.INSTANCE_COUNT;
+
+        return (double) error * error;
+    }
+
+    /**
+     * Rounds the fitted weights to weight tables
+     * @return The weights
+     */
+    public PatternWeights toWeights() {
+        short[][][] tables = new short[PatternEvaluator.PHASE_COUNT][PatternEvaluator.TYPE_COUNT][];
+        short[] mobility = new short[PatternEvaluator.PHASE_COUNT];
+        short[] parity = new short[PatternEvaluator.PHASE_COUNT];
+
+        for (int phase = 0; phase < PatternEvaluator.PHASE_COUNT; phase++) {
+            mobility[phase] = toShort(_mobility[phase]);
+            parity[phase] = toShort(_parity[phase]);
+
+            for (int type = 0; type < PatternEvaluator.TYPE_COUNT; type++) {
+                float[] weights = _tables[phase][type];
+                tables[phase][type] = new short[weights.length];
+
+                for (int code = 0; code < weights.length; code++)
+                    tables[phase][type][code] = toShort(weights[code]);
+            }
+        }
+
+        return new PatternWeights(tables, mobility, parity);
+    }
+
+    /**
+     * Rounds a weight, clamped to the range of a short
+     * @param weight The weight
+     * @return The rounded weight
+     */
+    private static short toShort(float weight) {
+        return (short) Math.round(Math.max(-MAX_WEIGHT, Math.min(MAX_WEIGHT, weight)));
+    }
+}
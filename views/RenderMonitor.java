@@ -0,0 +1,149 @@
+/*
+ * Enjun
+ *
+ * @version     1.0 Beta 1
+ * @author      Rocking Stars
+ * @copyright   2018, Enjun
+ *
+ * Copyright 2018 RockingStars
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rockingstar.modules.Reversi.views;
+
+import javafx.scene.Node;
+import javafx.scene.Parent;
+
+/**
+ * Measures what a board update costs on the JavaFX thread and the size of a scene graph, so it can
+ * be checked that both stay flat over a long session of games. For every flush of the view, the
+ * update itself (swapping images and labels) and the CSS and layout pass it causes are timed. The
+ * layout pass is run right away instead of in the next pulse, which then has nothing left to do for
+ * it. The rendering on the render thread isn't included.
+ *
+ * Monitoring is off unless the system property reversi.renderStats is true, so a normal session
+ * does no extra work. The session statistics are shared by all monitors, since every game gets a
+ * new view.
+ * @author Rocking Stars
+ * @since 1.0 Beta 1
+ */
+public class RenderMonitor {
+
+    /**
+     * The system property that turns monitoring on
+     */
+    public static final String PROPERTY = "reversi.renderStats";
+
+    /**
+     * The number of games reported in this session, and the node count of the first one
+     */
+    private static int _sessionGames;
+    private static int _firstNodeCount;
+
+    /**
+     * The root of the measured scene graph
+     */
+    private Node _root;
+
+    /**
+     * The number of measured updates, and their total and longest update and layout times in ns
+     */
+    private long _updates;
+    private long _totalUpdateTime;
+    private long _maxUpdateTime;
+    private long _totalLayoutTime;
+    private long _maxLayoutTime;
+
+    /**
+     * RenderMonitor constructor
+     * @param root The root of the measured scene graph
+     */
+    public RenderMonitor(Node root) {
+        _root = root;
+    }
+
+    /**
+     * Returns whether or not monitoring was turned on
+     * @return Whether or not the system property is true
+     */
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(PROPERTY);
+    }
+
+    /**
+     * Runs an update of the scene graph and the CSS and layout pass it causes, and records the time
+     * of both. Must be called on the JavaFX application thread.
+     * @param update The update
+     */
+    public void measure(Runnable update) {
+        long start = System.nanoTime();
+        update.run();
+        long updated = System.nanoTime();
+
+        _root.applyCss();
+
+        if (_root instanceof Parent)
+            ((Parent) _root).layout();
+
+        long laidOut = System.nanoTime();
+
+        _updates++;
+        _totalUpdateTime += updated - start;
+        _maxUpdateTime = Math.max(_maxUpdateTime, updated - start);
+        _totalLayoutTime += laidOut - updated;
+        _maxLayoutTime = Math.max(_maxLayoutTime, laidOut - updated);
+    }
+
+    /**
+     * Returns a report of the node count and the update times of the game, and adds it to the
+     * session. Must be called on the JavaFX application thread.
+     * @return The report
+     */
+    public String report() {
+        int nodes = countNodes(_root);
+
+        synchronized (RenderMonitor.class) {
+            if (_sessionGames++ == 0)
+                _firstNodeCount = nodes;
+        }
+
+        return String.format("Render stats of game %d: %d nodes (first game: %d), %d updates, update avg %.2f ms (max %.2f), css/layout avg %.2f ms (max %.2f)",
+                _sessionGames, nodes, _firstNodeCount, _updates, average(_totalUpdateTime), _maxUpdateTime / 1e6,
+                average(_totalLayoutTime), _maxLayoutTime / 1e6);
+    }
+
+    /**
+     * Returns the average of a total time over the updates
+     * @param total The total time in ns
+     * @return The average in ms
+     */
+    private double average(long total) {
+        return _updates == 0 ? 0 : total / 1e6 / _updates;
+    }
+
+    /**
+     * Counts the nodes of a scene graph
+     * @param node The root
+     * @return The number of nodes, including the root
+     */
+    public static int countNodes(Node node) {
+        int count = 1;
+
+        if (node instanceof Parent)
+            for (Node child : ((Parent) node).getChildrenUnmodifiable())
+                count += countNodes(child);
+
+        return count;
+    }
+}
@@ -27,8 +27,8 @@ import com.rockingstar.engine.game.Player;
 import com.rockingstar.engine.game.Timer;
 import com.rockingstar.engine.io.models.Util;
 import com.rockingstar.modules.Reversi.controllers.ReversiController;
+import com.rockingstar.modules.Reversi.models.BoardListener;
 import javafx.application.Platform;
-import javafx.event.EventHandler;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Node;
@@ -36,7 +36,6 @@ import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
-import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.HBox;
@@ -44,8 +43,10 @@ import javafx.scene.layout.VBox;
 
 import java.awt.*;
 import java.net.URISyntaxException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
-public class ReversiView {
+public class ReversiView implements BoardListener {
 
     private BorderPane _borderPane;
 
@@ -83,6 +84,24 @@ public class ReversiView {
     private Button _rageQuit;
     private Button _hanze;
 
+    private ImageView[][] _cells;
+    private RenderMonitor _renderMonitor;
+
+    // Cells that changed since the last flush, as a bitmask of positions (y * 8 + x)
+    private AtomicLong _dirtyCells = new AtomicLong();
+    private AtomicBoolean _flushPending = new AtomicBoolean();
+    private AtomicLong _runnablesPosted = new AtomicLong();
+
+    // The latest disc counts of the model, shown at the next flush
+    private volatile int _blackScore;
+    private volatile int _whiteScore;
+    private AtomicBoolean _scoreDirty = new AtomicBoolean();
+
+    private static Image _blackImage;
+    private static Image _whiteImage;
+    private static Image _possibleImage;
+    private static Image _emptyImage;
+
     private Player[][] _board;
     private ReversiController _controller;
     private boolean _isFinished;
@@ -99,9 +118,30 @@ public class ReversiView {
 
         _isFinished = false;
 
+        loadImages();
         setup();
     }
 
+    private static synchronized void loadImages() {
+        if (_emptyImage != null)
+            return;
+
+        _blackImage = loadImage("resources/styles/black1.png");
+        _whiteImage = loadImage("resources/styles/white1.png");
+        _possibleImage = loadImage("resources/styles/possible1.png");
+        _emptyImage = loadImage("styles/empty1.png");
+    }
+
+    private static Image loadImage(String path) {
+        try {
+            return new Image(ReversiView.class.getClassLoader().getResource(path).toURI().toString());
+        }
+        catch (URISyntaxException | NullPointerException e) {
+            Util.exit("Loading Reversi images");
+            return null;
+        }
+    }
+
     private void setup() {
         _gameInfo = new VBox();
         _gameInfo.setMinHeight(height/10);
@@ -191,6 +231,21 @@ public class ReversiView {
         _pane.setAlignment(Pos.CENTER);
         _pane.setPadding(new Insets(20));
 
+        // The cells are created once and only swap their image when the board changes
+        _cells = new ImageView[8][8];
+
+        for (int x = 0; x < 8; x++) {
+            for (int y = 0; y < 8; y++) {
+                ImageView cell = new ImageView(_emptyImage);
+                int cellX = x;
+                int cellY = y;
+
+                cell.setOnMousePressed(event -> handleCellPressed(cellX, cellY));
+                _cells[x][y] = cell;
+                _pane.add(cell, x, y);
+            }
+        }
+
         _buttons = new HBox();
 
         _buttons.setSpacing(60.0);
@@ -204,14 +259,13 @@ public class ReversiView {
         _borderPane.setCenter(_pane);
         _borderPane.setBottom(_buttons);
 
+        if (RenderMonitor.isEnabled())
+            _renderMonitor = new RenderMonitor(_borderPane);
     }
 
     public void generateBoardVisual() {
-        _pane.getChildren().clear();
-
-        for (int i = 0; i < 8; i++)
-            for (int j = 0; j < 8; j++)
-                setCellImage(i, j);
+        _dirtyCells.set(-1L);
+        flushCells();
     }
 
     public Button getForfeitButton() {
@@ -219,55 +273,100 @@ public class ReversiView {
     }
 
     public void setCellImage(int x, int y) {
-        String fileName;
-        ImageView imageView = new ImageView();
-        try {
-            if (_board[x][y] != null) {
-                switch (_board[x][y].getCharacter()) {
-                    case 'b':
-                        fileName = "black1.png";
-                        break;
-                    case 'w':
-                        fileName = "white1.png";
-                        break;
-                    case 'p':
-                        fileName = "possible1.png";
-                        break;
-                    default:
-                        fileName = null;
-                }
-
-                if (fileName != null)
-                    imageView.setImage(new Image(getClass().getClassLoader().getResource("resources/styles/" + fileName).toURI().toString()));
-            }
+        long cell = 1L << (y * 8 + x);
+        long dirty;
+
+        do {
+            dirty = _dirtyCells.get();
+        } while (!_dirtyCells.compareAndSet(dirty, dirty | cell));
+    }
+
+    /**
+     * Updates all dirty cells in one runnable on the FX thread. Called once per game event, so a
+     * move with many flips only posts a single update.
+     */
+    public void flushCells() {
+        if (_dirtyCells.get() == 0 && !_scoreDirty.get() || !_flushPending.compareAndSet(false, true))
+            return;
+
+        post(() -> {
+            if (_renderMonitor != null)
+                _renderMonitor.measure(this::applyChanges);
             else
-                imageView.setImage(new Image(getClass().getClassLoader().getResource("styles/empty1.png").toURI().toString()));
+                applyChanges();
+        });
+    }
+
+    private void applyChanges() {
+        _flushPending.set(false);
+
+        for (long dirty = _dirtyCells.getAndSet(0); dirty != 0; dirty &= dirty - 1) {
+            int position = Long.numberOfTrailingZeros(dirty);
+            int x = position % 8;
+            int y = position / 8;
+
+            _cells[x][y].setImage(getCellImage(_board[x][y]));
         }
-        catch (URISyntaxException | NullPointerException e) {
-            Util.exit("Loading Reversi images");
+
+        if (_scoreDirty.getAndSet(false)) {
+            boolean player1IsBlack = _controller.getColorP1() == 'b';
+
+            _player1Score.setText("" + (player1IsBlack ? _blackScore : _whiteScore));
+            _player2Score.setText("" + (player1IsBlack ? _whiteScore : _blackScore));
         }
+    }
 
-        Platform.runLater(() -> {
-            if (_board[x][y] != null && _board[x][y].getCharacter() == 'p') {
-                int tempX = x;
-                int tempY = y;
-
-                if (!(_controller.getPlayerToMove() instanceof AI)) {
-                    imageView.setOnMousePressed(new EventHandler<MouseEvent>() {
-                        @Override
-                        public void handle(MouseEvent event) {
-                            if (!_isFinished && _controller.getIsYourTurn()) {
-                                _controller.doPlayerMove(tempX, tempY);
-                                imageView.removeEventFilter(MouseEvent.MOUSE_CLICKED, this);
-                            } else if (!_controller.getIsYourTurn())
-                                _errorStatus.setText("It's not your turn.");
-                        }
-                    });
-                }
-            }
+    public long getRunnablesPosted() {
+        return _runnablesPosted.get();
+    }
 
-            _pane.add(imageView, x, y);
-        });
+    private void post(Runnable runnable) {
+        _runnablesPosted.incrementAndGet();
+        Platform.runLater(runnable);
+    }
+
+    private Image getCellImage(Player player) {
+        if (player == null)
+            return _emptyImage;
+
+        switch (player.getCharacter()) {
+            case 'b':
+                return _blackImage;
+            case 'w':
+                return _whiteImage;
+            case 'p':
+                return _possibleImage;
+            default:
+                return null;
+        }
+    }
+
+    private void handleCellPressed(int x, int y) {
+        // Only cells that show a possible move can be clicked
+        if (_board[x][y] == null || _board[x][y].getCharacter() != 'p' || _controller.getPlayerToMove() instanceof AI)
+            return;
+
+        if (!_isFinished && _controller.getIsYourTurn())
+            _controller.doPlayerMove(x, y);
+        else if (!_controller.getIsYourTurn())
+            _errorStatus.setText("It's not your turn.");
+    }
+
+    public void reportRenderStats() {
+        if (_renderMonitor != null)
+            post(() -> Util.displayStatus(_renderMonitor.report()));
+    }
+
+    @Override
+    public void cellChanged(int x, int y) {
+        setCellImage(x, y);
+    }
+
+    @Override
+    public void scoreChanged(int black, int white) {
+        _blackScore = black;
+        _whiteScore = white;
+        _scoreDirty.set(true);
     }
 
     public void updatePlayerColors() {
@@ -287,11 +386,11 @@ public class ReversiView {
     }
 
     public void setStatus(String status) {
-        Platform.runLater(() -> _status.setText(status));
+        post(() -> _status.setText(status));
     }
 
     public void setErrorStatus(String errorStatus) {
-        Platform.runLater(() -> _errorStatus.setText(errorStatus));
+        post(() -> _errorStatus.setText(errorStatus));
     }
 
     public void setIsFinished(boolean isFinished) {